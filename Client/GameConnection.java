@@ -0,0 +1,370 @@
+package Client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import General.Protocol;
+import General.Utils;
+
+/**
+ *
+ * @class                       GameConnection
+ * @brief                       Connessione con il server di gioco. All'apertura richiede il protocollo binario e, se il
+ *                              server non lo supporta, si riconnette con il protocollo testuale; le risposte sono
+ *                              restituite nello stesso formato in entrambi i casi. Piu' parole possono essere inviate
+ *                              insieme (guessBatch) senza attendere la risposta di ognuna. Se il server e' occupato
+ *                              viene sollevata ServerBusyException con il tempo di attesa suggerito
+ * @author                      Simone Tassotti
+ * @date                        18/10/2026
+ *
+ */
+public class GameConnection implements Closeable {
+
+    /** Attributi oggetto */
+    private Socket server;
+    private DataInputStream dis;
+    private DataOutputStream dos;
+    private boolean binary;                 // true se il server ha accettato il protocollo binario
+    private int version;                    // Versione del protocollo binario concordata
+    private int nextId;                     // Identificativo della prossima richiesta (versione 2)
+    private ArrayDeque<Integer> inFlight;   // Identificativi delle richieste inviate e non ancora risposte
+
+    /**
+     *
+     * @fun                             GameConnection
+     * @brief                           Metodo costruttore
+     * @param server                    Socket connesso al server
+     * @throws IOException
+     *
+     */
+    private GameConnection(Socket server) throws IOException {
+        this.server = server;
+        this.dis = new DataInputStream(new BufferedInputStream(server.getInputStream()));
+        this.dos = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
+        this.binary = false;
+        this.inFlight = new ArrayDeque<>();
+    }
+
+                                        /********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 writeString
+     * @brief               Invia una stringa del protocollo binario (u16 + UTF-8)
+     *
+     */
+    private void writeString(String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if(b.length > Protocol.MAX_STRING) throw new IllegalArgumentException();
+        this.dos.writeShort(b.length);
+        this.dos.write(b);
+    }
+
+    /**
+     *
+     * @fun                 readString
+     * @brief               Riceve una stringa del protocollo binario (u16 + UTF-8)
+     *
+     */
+    private String readString() throws IOException {
+        byte[] b = new byte[this.dis.readUnsignedShort()];
+        this.dis.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     *
+     * @fun                 begin
+     * @brief               Inizia una richiesta binaria: identificativo (dalla versione 2) e opcode
+     *
+     */
+    private void begin(int op) throws IOException {
+        if(this.version >= Protocol.VERSION_PIPELINE) {
+            this.inFlight.add(this.nextId);
+            this.dos.writeInt(this.nextId++);
+        }
+        this.dos.writeByte(op);
+    }
+
+    /**
+     *
+     * @fun                 status
+     * @brief               Riceve l'intestazione della risposta alla richiesta inviata per prima e ne restituisce lo stato
+     *
+     */
+    private int status() throws IOException {
+        if(this.version >= Protocol.VERSION_PIPELINE) {
+            int id = this.dis.readInt();
+            Integer expected = this.inFlight.poll();
+            if(expected == null || id != expected) throw new IOException("Risposta " + id + " fuori ordine");
+        }
+        return this.dis.readByte();
+    }
+
+    /**
+     *
+     * @fun                 request
+     * @brief               Invia una richiesta senza argomenti e restituisce lo stato della risposta
+     *
+     */
+    private int request(int op) throws IOException {
+        begin(op);
+        this.dos.flush();
+        return status();
+    }
+
+    /**
+     *
+     * @fun                 guessResult
+     * @brief               Risultato di OP_GUESS nel formato del protocollo testuale
+     *
+     */
+    private static String guessResult(int status, String text) {
+        switch (status) {
+            case Protocol.GUESS_HINT: return text;
+            case Protocol.GUESS_WIN: return "win_" + text;
+            case Protocol.GUESS_TIMEOUT: return "timeout_" + text;
+            case Protocol.GUESS_MAX_ATTEMPTS: return "maxAtt_" + text;
+            case Protocol.GUESS_NOT_ALLOWED: return "notAllow";
+            case Protocol.GUESS_ALREADY_WON: return "justWin";
+            case Protocol.GUESS_NOT_FOUND: return "notFound";
+            default: return "error";
+        }
+    }
+
+    /**
+     *
+     * @fun                 command
+     * @brief               Invia un comando testuale e restituisce l'intero di risposta
+     *
+     */
+    private int command(String cmd) throws IOException {
+        Utils.sendMessage(this.dos, cmd);
+        this.dos.flush();
+        return this.dis.readInt();
+    }
+
+                                        /************************************/
+
+    /**
+     *
+     * @fun                             open
+     * @brief                           Apre la connessione con il server di gioco
+     * @param ip                        Indirizzo del server
+     * @param port                      Porta del server
+     * @param binary                    true per richiedere il protocollo binario
+     * @return                          Connessione aperta
+     * @throws IOException
+     *
+     */
+    public static GameConnection open(String ip, int port, boolean binary) throws IOException {
+
+        /** Richiedo il protocollo binario */
+        if(binary) {
+            GameConnection c = new GameConnection(new Socket(ip, port));
+            try {
+                c.dos.writeInt(Protocol.HELLO);
+                c.dos.writeByte(Protocol.VERSION);
+                c.dos.flush();
+                int hello = c.dis.readInt();
+                if(hello == Protocol.BUSY) {
+                    long retry = c.dis.readLong();
+                    c.close();
+                    throw new ServerBusyException(retry);
+                }
+                if(hello == Protocol.HELLO && (c.version = c.dis.readUnsignedByte()) >= 1) {
+                    c.binary = true;
+                    return c;
+                }
+            } catch (EOFException | SocketException e) {
+                /** Server con il solo protocollo testuale: chiude la connessione */
+            }
+            c.close();
+        }
+        return new GameConnection(new Socket(ip, port));
+    }
+
+    /**
+     *
+     * @fun                             login
+     * @brief                           Invio credenziali di accesso al server
+     * @return                          Codice di login del server
+     *
+     */
+    public int login(String username, String password) throws IOException {
+        if(this.binary) {
+            begin(Protocol.OP_LOGIN);
+            writeString(username);
+            writeString(password);
+            this.dos.flush();
+            return status();
+        }
+        Utils.sendMessage(this.dos, username);
+        Utils.sendMessage(this.dos, password);
+        this.dos.flush();
+        int code = this.dis.readInt();
+        if(code == Protocol.BUSY) throw new ServerBusyException(this.dis.readLong());
+        return code;
+    }
+
+    /**
+     *
+     * @fun                             play
+     * @brief                           Richiesta di partecipare al gioco corrente
+     * @return                          Codice di risposta del server
+     *
+     */
+    public int play() throws IOException {
+        return this.binary ? request(Protocol.OP_PLAY) : command("play");
+    }
+
+    /**
+     *
+     * @fun                             guess
+     * @brief                           Invia una parola da indovinare
+     * @param word                      Parola da indovinare
+     * @return                          Risposta nel formato del protocollo testuale ("win_" + traduzione, suggerimento, ...)
+     *
+     */
+    public String guess(String word) throws IOException {
+        if(!this.binary) {
+            Utils.sendMessage(this.dos, "gw");
+            Utils.sendMessage(this.dos, word);
+            this.dos.flush();
+            return Utils.receiveMessage(this.dis);
+        }
+        begin(Protocol.OP_GUESS);
+        writeString(word);
+        this.dos.flush();
+        int status = status();
+        return guessResult(status, readString());
+    }
+
+    /**
+     *
+     * @fun                             guessBatch
+     * @brief                           Invia piu' parole da indovinare senza attendere le singole risposte: con il
+     *                                  protocollo binario versione 2 in una sola richiesta, altrimenti in coda
+     * @param words                     Parole da indovinare, in ordine
+     * @return                          Risposte nello stesso ordine, nel formato di guess
+     *
+     */
+    public List<String> guessBatch(List<String> words) throws IOException {
+        List<String> res = new ArrayList<>(words.size());
+
+        /** Una sola richiesta con tutte le parole (al piu' MAX_BATCH per richiesta) */
+        if(this.binary && this.version >= Protocol.VERSION_PIPELINE) {
+            for (int from = 0; from < words.size(); from += Protocol.MAX_BATCH) {
+                List<String> part = words.subList(from, Math.min(words.size(), from + Protocol.MAX_BATCH));
+                begin(Protocol.OP_GUESS_BATCH);
+                this.dos.writeByte(part.size());
+                for (String w : part) writeString(w);
+                this.dos.flush();
+                status();
+                int n = this.dis.readUnsignedByte();
+                for (int i = 0; i < n; i++) {
+                    int status = this.dis.readByte();
+                    res.add(guessResult(status, readString()));
+                }
+            }
+            return res;
+        }
+
+        /** Richieste singole inviate tutte insieme, poi le risposte nello stesso ordine */
+        for (String w : words) {
+            if(this.binary) {
+                begin(Protocol.OP_GUESS);
+                writeString(w);
+            } else {
+                Utils.sendMessage(this.dos, "gw");
+                Utils.sendMessage(this.dos, w);
+            }
+        }
+        this.dos.flush();
+        for (int i = 0; i < words.size(); i++) {
+            if(this.binary) {
+                int status = status();
+                res.add(guessResult(status, readString()));
+            } else res.add(Utils.receiveMessage(this.dis));
+        }
+        return res;
+    }
+
+    /**
+     *
+     * @fun                             statistics
+     * @brief                           Richiesta delle statistiche dell'utente
+     * @return                          Statistiche dell'utente
+     *
+     */
+    public String statistics() throws IOException {
+        if(!this.binary) {
+            Utils.sendMessage(this.dos, "statistics");
+            this.dos.flush();
+            return Utils.receiveMessage(this.dis);
+        }
+        request(Protocol.OP_STATS);
+        return readString();
+    }
+
+    /**
+     *
+     * @fun                             share
+     * @brief                           Condivide sul social network i suggerimenti dell'ultimo gioco
+     * @return                          0 se condivisi
+     *
+     */
+    public int share() throws IOException {
+        return this.binary ? request(Protocol.OP_SHARE) : command("share");
+    }
+
+    /**
+     *
+     * @fun                             time
+     * @brief                           Tempo rimanente del round corrente
+     * @return                          Millisecondi alla prossima parola
+     *
+     */
+    public long time() throws IOException {
+        if(this.binary) request(Protocol.OP_TIME);
+        else {
+            Utils.sendMessage(this.dos, "time");
+            this.dos.flush();
+        }
+        return this.dis.readLong();
+    }
+
+    /**
+     *
+     * @fun                             logout
+     * @brief                           Logout dal server
+     * @return                          0 se effettuato
+     *
+     */
+    public int logout() throws IOException {
+        return this.binary ? request(Protocol.OP_LOGOUT) : command("logout");
+    }
+
+    /**
+     *
+     * @fun                             close
+     * @brief                           Chiude la connessione
+     *
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+    }
+
+}
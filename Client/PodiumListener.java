@@ -0,0 +1,104 @@
+package Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.LinkedList;
+
+/**
+ *
+ * @class                       PodiumListener
+ * @brief                       Riceve il podio pubblicato dal server sul gruppo multicast della classifica e aggiorna
+ *                              il podio del client; i datagrammi con sequenza non successiva all'ultima ricevuta
+ *                              (arrivati in ritardo o duplicati) vengono scartati
+ * @author                      Simone Tassotti
+ * @date                        18/10/2026
+ *
+ */
+public class PodiumListener implements Runnable {
+
+    /** Attributi oggetto */
+    private WordleClient wc;                // Client di cui aggiornare il podio
+    private String ip;                      // Indirizzo del gruppo multicast della classifica
+    private int port;                       // Porta del gruppo multicast della classifica
+    private long instance;                  // Istante di avvio del server dell'ultimo podio ricevuto
+    private long seq;                       // Sequenza dell'ultimo podio ricevuto
+
+    /**
+     *
+     * @fun                             PodiumListener
+     * @brief                           Metodo costruttore
+     * @param wc                        Client di cui aggiornare il podio
+     * @param ip                        Indirizzo ip del gruppo multicast
+     * @param port                      Porta del gruppo multicast
+     *
+     */
+    public PodiumListener(WordleClient wc, String ip, int port) {
+        this.wc = wc;
+        this.ip = ip;
+        this.port = port;
+        this.instance = 0;
+        this.seq = 0;
+    }
+
+    /**
+     *
+     * @fun                             run
+     * @brief                           Resta in attesa dei podi pubblicati dal server
+     *
+     */
+    @Override
+    public void run() {
+
+        /** Accedo al canale multicast */
+        MulticastSocket ms = null;
+        InetSocketAddress isa = null;
+        NetworkInterface ni = null;
+        byte[] buf = new byte[1500];
+        try {
+            isa = new InetSocketAddress(InetAddress.getByName(ip), port);
+            ms = new MulticastSocket(port);
+            ni = SocialNetworkNotify.setInterface(ms);
+            ms.joinGroup(isa, ni);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                DatagramPacket dp = new DatagramPacket(buf, buf.length);
+                ms.receive(dp);
+
+                /** Formato: istante di avvio del server, sequenza, numero di righe, righe (UTF) */
+                try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(dp.getData(), 0, dp.getLength()))) {
+                    long instance = dis.readLong();
+                    long seq = dis.readLong();
+                    if(instance == this.instance && seq <= this.seq) continue;
+                    if(instance < this.instance) continue;
+                    int n = dis.readInt();
+                    LinkedList<String> update = new LinkedList<>();
+                    for (int i = 0; i < n; i++) update.add(dis.readUTF());
+                    this.instance = instance;
+                    this.seq = seq;
+                    this.wc.ServerAlert(update);
+                } catch (IOException e) {
+                    /** Datagramma non valido: lo ignoro */
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            if(ms != null) {
+                try {
+                    ms.leaveGroup(isa, ni);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                ms.close();
+            }
+        }
+
+    }
+}
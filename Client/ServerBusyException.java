@@ -0,0 +1,42 @@
+package Client;
+
+import java.io.IOException;
+
+/**
+ *
+ * @class                       ServerBusyException
+ * @brief                       Il server ha rifiutato la connessione perche' occupato (risposta BUSY)
+ * @author                      Simone Tassotti
+ * @date                        18/10/2026
+ *
+ */
+public class ServerBusyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Attributi oggetto */
+    private final long retryAfterMs;
+
+    /**
+     *
+     * @fun                             ServerBusyException
+     * @brief                           Metodo costruttore
+     * @param retryAfterMs              Tempo di attesa suggerito dal server prima di riprovare (ms)
+     *
+     */
+    public ServerBusyException(long retryAfterMs) {
+        super("Server occupato - riprovare tra " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     *
+     * @fun                             retryAfterMs
+     * @brief                           Tempo di attesa suggerito dal server prima di riprovare (ms)
+     *
+     */
+    public long retryAfterMs() {
+        return this.retryAfterMs;
+    }
+
+}
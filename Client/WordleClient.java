@@ -1,13 +1,10 @@
 package Client;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
-import java.net.Socket;
 import java.nio.file.Path;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
@@ -48,6 +45,8 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
     private String password;
     private LinkedList<String> serverNotice;
     private Thread socialNetworkListener;
+    private Thread podiumListener;          // Podio ricevuto in multicast, null se notificato via RMI
+    private boolean binaryProtocol;         // Richiede al server il protocollo binario
     private LinkedList<String> podium;
 
                                         /********** METODI PRIVATI **********/
@@ -73,41 +72,22 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
         }
     }
 
-    /**
-     * 
-     * @fun                             sendCred
-     * @brief                           Invio credenziali di accesso al server
-     * @param dos                       Stream di output
-     * @throws IOException
-     * @throws NullPointerException     
-     * 
-     */
-    private void sendCred(DataOutputStream dos) throws IOException {
-
-        /** Controllo argomento */
-        if(dos == null) throw new NullPointerException();
-
-        /** Invio le credenziali al server */
-        Utils.sendMessage(dos, username);
-        Utils.sendMessage(dos, password);
-    }
-
     /**
      *
      * @fun                             requestsToServer
      * @brief                           Gestisce le richieste che il client vuole richiedere al server di gioco
      * @param inputKB                   Input da tastiera delle richieste da fare
-     * @param server                    Socket di comunicazione TCP con il server
+     * @param server                    Connessione con il server
      * @throws NullPointerException-NumberFormatException-IOException
      * 
      */
-    private void requestsToServer(BufferedReader inputKB, Socket server) throws NumberFormatException, IOException {
+    private void requestsToServer(BufferedReader inputKB, GameConnection server) throws NumberFormatException, IOException {
         
         /** Controllo argomenti */
         if((inputKB == null) || (server == null)) throw new NullPointerException();
 
         /** Inizio a comunicare con il server */
-        try (DataOutputStream dos = new DataOutputStream(server.getOutputStream()); DataInputStream dis = new DataInputStream(server.getInputStream());) {
+        try {
 
             /** Prima di procedere, l'utente deve effettuare il login */
             while(true) {
@@ -116,11 +96,10 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                 this.username = inputKB.readLine();
                 System.out.print("<< Password >> ->> ");
                 this.password = inputKB.readLine();
-                sendCred(dos);
-                int code = dis.readInt();
+                int code = server.login(this.username, this.password);
                 if(code == 0) {
                     System.out.println("\n\n<< Accesso effettuato >>\n\n");
-                    this.registerClientAlertService();
+                    if(this.podiumListener == null) this.registerClientAlertService();
                     Thread.sleep(1000);
                     break;
                 } else if(code == 1) System.out.println("\n\n<< Utente non registrato - Riprovare >>\n\n");
@@ -139,6 +118,7 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                 System.out.println("3) Mostra notifiche del server di gioco");
                 System.out.println("4) Mostrami prime 3 posizioni della classifica");
                 System.out.println("5) Logout dal server");
+                System.out.println("6) Tempo rimanente alla prossima parola");
                 System.out.println(" >> ");
                 int opt = Integer.parseInt(inputKB.readLine());
 
@@ -148,8 +128,7 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                     /** Richiedo al server di partecipare al gioco corrente */
                     case 1:
                         if(!play) {
-                            Utils.sendMessage(dos, "play");
-                            res = dis.readInt();
+                            res = server.play();
                             switch(res) {
 
                                 /** Errore - Login non effettuato */
@@ -178,13 +157,11 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                     case 2:
                         if(play) {  // Solo se ho partecipato al gioco posso inviare una parola al server
 
-                            Utils.sendMessage(dos, "gw");
                             System.out.print("\033[H\033[2J");  
                             System.out.flush();
                             System.out.print("<< Inserisci una parola di 10 lettere >> -->> ");
                             String gw = inputKB.readLine();
-                            Utils.sendMessage(dos, gw);
-                            String tips = Utils.receiveMessage(dis);
+                            String tips = server.guess(gw);
                             int share;
 
                             /** Una volta inviata la parola, valuto la risposta */
@@ -221,8 +198,7 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                                         System.out.print("->> ");
                                         share = Integer.parseInt(inputKB.readLine());
                                         if(share == 1) {
-                                            Utils.sendMessage(dos, "share");
-                                            if(dis.readInt() == 0) System.out.println("Suggerimenti pubblicati");
+                                            if(server.share() == 0) System.out.println("Suggerimenti pubblicati");
                                             else System.out.println("Impossibile pubblicare i suggerimenti");
                                         }
                                     } else if(!tips.contains("+") && !tips.contains("?") && !tips.contains("X")) {
@@ -232,19 +208,16 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
                                             System.out.println("Complimenti - Hai indovinato la parola segreta!");
                                             System.out.print("Desideri condividere i suggerimenti online? \n(1)Si (0)No _>");                                            
                                             share = Integer.parseInt(inputKB.readLine());
-                                            Utils.sendMessage(dos, "statistics");
-                                            String statistics = Utils.receiveMessage(dis);
+                                            String statistics = server.statistics();
                                             System.out.println("\n" + statistics);
                                             if(share == 1) {
-                                                Utils.sendMessage(dos, "share");
-                                                if(dis.readInt() == 0) System.out.println("Suggerimenti pubblicati");
+                                                if(server.share() == 0) System.out.println("Suggerimenti pubblicati");
                                                 else System.out.println("Impossibile pubblicare i suggerimenti");
                                             }
                                         }
                                         else {
                                             System.out.println("<< Game over - La parola segreta era: " + tips.substring(8) + " >>");
-                                            Utils.sendMessage(dos, "statistics");
-                                            String statistics = Utils.receiveMessage(dis);
+                                            String statistics = server.statistics();
                                             System.out.println("\n" + statistics);
                                             play = false;
                                         }
@@ -282,14 +255,21 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
     
                     /** Logout client dal server */
                     case 5:
-                        Utils.sendMessage(dos, "logout");
-                        res = dis.readInt();
+                        res = server.logout();
                         if(res != 0) System.err.println("Errore durante logout");
                         else { System.out.println("Utente esce dal gioco"); return; }
                     break;
+
+                    /** Chiedo al server quanto manca alla fine del round */
+                    case 6:
+                        long ms = server.time();
+                        System.out.println("<< Prossima parola tra " + ms/1000 + "." + String.format("%03d", ms%1000) + " secondi >>");
+                    break;
                 }
                 Thread.sleep(1000);
             }
+        } catch (ServerBusyException sbe) {
+            System.out.println("<< Server occupato - Riprovare tra " + (sbe.retryAfterMs()+999)/1000 + " secondi >>\n");
         } catch (IOException ioe) {
             System.out.println("<< Interruzione improvvisa connessione con il server >>\n");
         } catch(NumberFormatException nfe) {
@@ -317,7 +297,8 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
 
         /** Estraggo le informazioni dal file di config */
         try {
-            String[][] param = ReadConfigFile.readFileConfig(configFile, "portSocialNetwork", "ipSocialNetwork", "portRMI", "serverIP", "listenPort");
+            String[][] param = ReadConfigFile.readFileConfig(configFile, "portSocialNetwork", "ipSocialNetwork", "portRMI", "serverIP", "listenPort",
+                                                                "podiumMode", "podiumGroup", "podiumPort", "protocol");
             
             this.socialNetworkIP = Utils.filterParam(param, "ipSocialNetwork");
             this.socialNetworkPORT = Integer.parseInt(Utils.filterParam(param, "portSocialNetwork"));
@@ -326,8 +307,19 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
             this.serverPORT = Integer.parseInt(Utils.filterParam(param, "listenPort"));
             this.serverNotice = new LinkedList<>();
             this.podium = new LinkedList<>();
+            this.binaryProtocol = !Utils.filterParam(param, "protocol").equals("text");
             this.socialNetworkListener = new Thread(new SocialNetworkNotify(this, this.socialNetworkIP, this.socialNetworkPORT));
             this.socialNetworkListener.start();
+
+            /** Podio dal gruppo multicast della classifica invece delle notifiche RMI */
+            if(Utils.filterParam(param, "podiumMode").equals("multicast")) {
+                String save;
+                String podiumGroup = ((save = Utils.filterParam(param, "podiumGroup")).equals("")) ? "228.5.6.8" : save;
+                int podiumPort = ((save = Utils.filterParam(param, "podiumPort")).equals("")) ? 7001 : Integer.parseInt(save);
+                this.podiumListener = new Thread(new PodiumListener(this, podiumGroup, podiumPort));
+                this.podiumListener.setDaemon(true);
+                this.podiumListener.start();
+            }
         
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -382,8 +374,11 @@ public class WordleClient implements Runnable, ServerNotify, Serializable {
             }
             
             /** Effettuare accesso al server */
-            try (Socket server = new Socket(this.serverIP, this.serverPORT)){
+            try (GameConnection server = GameConnection.open(this.serverIP, this.serverPORT, this.binaryProtocol)){
                 requestsToServer(inputKB, server);
+            } catch (ServerBusyException sbe) {
+                System.out.println("<< Server occupato - Riprovare tra " + (sbe.retryAfterMs()+999)/1000 + " secondi >>\n");
+                return;
             } catch (Exception e) {
                 e.printStackTrace();
                 return;
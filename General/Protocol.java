@@ -0,0 +1,105 @@
+package General;
+
+/**
+ *
+ * @class                   Protocol
+ * @brief                   Costanti e codifica del protocollo binario client - server. Il client apre la connessione con
+ *                          HELLO (intero negativo, mai valido come dimensione di un messaggio testuale) seguito dalla
+ *                          versione; il server risponde con HELLO e la versione scelta, altrimenti la connessione resta
+ *                          sul protocollo testuale. Ogni richiesta e' un opcode di un byte seguito dai suoi argomenti,
+ *                          ogni risposta un byte di stato seguito dai campi fissi dell'opcode. Le stringhe sono inviate
+ *                          come dimensione in byte (u16) e contenuto UTF-8. Dalla versione 2 ogni richiesta e' preceduta
+ *                          da un identificativo (i32) ripetuto nella risposta: il client puo' inviare piu' richieste senza
+ *                          attendere le risposte, che arrivano nello stesso ordine. Se il server non accetta la connessione
+ *                          risponde subito, con entrambi i protocolli, BUSY e il tempo di attesa suggerito prima di riprovare
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class Protocol {
+
+    /** Negoziazione */
+    public static final int HELLO = 0xFEED5701;
+    public static final int VERSION = 2;
+    public static final int VERSION_PIPELINE = 2;           // Prima versione con identificativi e OP_GUESS_BATCH
+    public static final int MAX_STRING = 0xFFFF;
+    public static final int BUSY = 0xFEED5B5B;              // Server occupato, seguito dall'attesa suggerita (i64 ms)
+
+    /** Opcode delle richieste */
+    public static final int OP_LOGIN = 1;                   // username, password -> stato (codice di login)
+    public static final int OP_PLAY = 2;                    // -> stato (codice di playGame)
+    public static final int OP_GUESS = 3;                   // parola -> stato, testo
+    public static final int OP_STATS = 4;                   // -> stato, testo
+    public static final int OP_SHARE = 5;                   // -> stato
+    public static final int OP_TIME = 6;                    // -> stato, ms rimanenti (i64)
+    public static final int OP_LOGOUT = 7;                  // -> stato
+    public static final int OP_GUESS_BATCH = 8;             // n (u8), n parole -> stato, n (u8), n volte (stato, testo)
+    public static final int MAX_BATCH = 0xFF;
+
+    /** Stati della risposta a OP_GUESS (il testo e' vuoto se non indicato) */
+    public static final int GUESS_HINT = 0;                 // testo: suggerimento
+    public static final int GUESS_WIN = 1;                  // testo: traduzione della parola segreta
+    public static final int GUESS_TIMEOUT = 2;              // testo: traduzione della parola del round concluso
+    public static final int GUESS_MAX_ATTEMPTS = 3;         // testo: traduzione della parola segreta
+    public static final int GUESS_NOT_ALLOWED = 4;
+    public static final int GUESS_ALREADY_WON = 5;
+    public static final int GUESS_NOT_FOUND = 6;
+    public static final int GUESS_ERROR = 7;
+
+    /**
+     *
+     * @fun                     utf8Length
+     * @brief                   Dimensione in byte della codifica UTF-8 di s a partire da from
+     * @param s                 Stringa da codificare
+     * @param from              Primo carattere da codificare
+     * @return                  Numero di byte
+     *
+     */
+    public static int utf8Length(String s, int from) {
+        int n = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < 0x80) n += 1;
+            else if(c < 0x800) n += 2;
+            else if(Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+
+    /**
+     *
+     * @fun                     putUtf8
+     * @brief                   Codifica in UTF-8 s (a partire da from) nel vettore dst senza allocare memoria;
+     *                          dst deve avere almeno utf8Length(s, from) byte liberi da off
+     * @param s                 Stringa da codificare
+     * @param from              Primo carattere da codificare
+     * @param dst               Vettore di destinazione
+     * @param off               Posizione di partenza in dst
+     * @return                  Posizione successiva all'ultimo byte scritto
+     *
+     */
+    public static int putUtf8(String s, int from, byte[] dst, int off) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < 0x80) dst[off++] = (byte) c;
+            else if(c < 0x800) {
+                dst[off++] = (byte) (0xC0 | (c >> 6));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst[off++] = (byte) (0xF0 | (cp >> 18));
+                dst[off++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[off++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if(Character.isSurrogate(c)) c = '?';       // Surrogato isolato: non rappresentabile in UTF-8
+                dst[off++] = (byte) (0xE0 | (c >> 12));
+                dst[off++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return off;
+    }
+
+}
@@ -3,6 +3,7 @@ package General;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Utils
@@ -39,11 +40,11 @@ public class Utils {
         /** Controllo argomenti */
         if((dos == null) || (msg == null)) throw new NullPointerException();
 
-        /** Invio la dimensione e il messaggio */
-        int reqDim = msg.length();
+        /** Invio la dimensione (in byte UTF-8, non in caratteri) e il messaggio */
+        byte[] reqByte = msg.getBytes(StandardCharsets.UTF_8);
     
-        dos.writeInt(reqDim);
-        dos.write(msg.getBytes(), 0, reqDim);
+        dos.writeInt(reqByte.length);
+        dos.write(reqByte, 0, reqByte.length);
     }
 
     /**
@@ -67,7 +68,7 @@ public class Utils {
         reqDim = dis.readInt();  
         reqByte = dis.readNBytes(reqDim);
         
-        return new String(reqByte, 0, reqDim);
+        return new String(reqByte, 0, reqDim, StandardCharsets.UTF_8);
     }
     
 }
\ No newline at end of file
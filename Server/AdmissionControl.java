@@ -0,0 +1,220 @@
+package Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import General.Protocol;
+
+/**
+ *
+ * @class                   AdmissionControl
+ * @brief                   Controllo delle connessioni accettate: limita le sessioni contemporanee e quelle per indirizzo
+ *                          IP. Una connessione oltre i limiti riceve subito la risposta BUSY con il tempo di attesa
+ *                          suggerito e viene chiusa, invece di restare in coda occupando memoria e thread
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class AdmissionControl {
+
+    /** Variabili globali */
+    public static final int maxSessionsDefault = 10000;
+    public static final int maxConnectionsPerIpDefault = 0;         // 0: nessun limite per indirizzo
+    public static final long busyRetryMsDefault = 1000;
+
+    /** Attributi */
+    private final int maxSessions;
+    private final int maxPerIp;
+    private final AtomicInteger sessions;
+    private final ConcurrentHashMap<InetAddress, Integer> perIp;
+    private final byte[] busy;                                      // Risposta BUSY gia' codificata
+    private final LongAdder rejectedSessions;
+    private final LongAdder rejectedPerIp;
+    private final LongAdder rejectedPool;
+    private final AtomicInteger peak;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     AdmissionControl
+     * @brief                   Metodo costruttore
+     * @param maxSessions       Sessioni contemporanee massime
+     * @param maxPerIp          Connessioni contemporanee massime per indirizzo IP, 0 senza limite
+     * @param busyRetryMs       Tempo di attesa suggerito ai client rifiutati (ms)
+     * @param log               File di log
+     *
+     */
+    public AdmissionControl(int maxSessions, int maxPerIp, long busyRetryMs, Logger log) {
+
+        /** Controllo argomenti */
+        if(maxSessions <= 0 || maxPerIp < 0 || busyRetryMs < 0) throw new IllegalArgumentException();
+
+        this.maxSessions = maxSessions;
+        this.maxPerIp = maxPerIp;
+        this.sessions = new AtomicInteger();
+        this.perIp = new ConcurrentHashMap<>();
+        this.busy = ByteBuffer.allocate(12).putInt(Protocol.BUSY).putLong(busyRetryMs).array();
+        this.rejectedSessions = new LongAdder();
+        this.rejectedPerIp = new LongAdder();
+        this.rejectedPool = new LongAdder();
+        this.peak = new AtomicInteger();
+        this.log = log;
+    }
+
+    /**
+     *
+     * @fun                     admit
+     * @brief                   Riserva una sessione per il client se i limiti lo consentono
+     * @param address           Indirizzo del client
+     * @return                  true se la connessione e' accettata (va liberata con release)
+     *
+     */
+    public boolean admit(InetAddress address) {
+
+        /** Sessioni contemporanee */
+        int n = this.sessions.incrementAndGet();
+        if(n > this.maxSessions) {
+            this.sessions.decrementAndGet();
+            this.rejectedSessions.increment();
+            return false;
+        }
+
+        /** Connessioni dallo stesso indirizzo */
+        if(this.maxPerIp > 0) {
+            boolean[] ok = { true };
+            this.perIp.compute(address, (k, v) -> {
+                int c = (v == null) ? 0 : v;
+                if(c >= this.maxPerIp) {
+                    ok[0] = false;
+                    return v;
+                }
+                return c + 1;
+            });
+            if(!ok[0]) {
+                this.sessions.decrementAndGet();
+                this.rejectedPerIp.increment();
+                return false;
+            }
+        }
+        this.peak.accumulateAndGet(n, Math::max);
+        return true;
+    }
+
+    /**
+     *
+     * @fun                     release
+     * @brief                   Libera la sessione riservata con admit
+     * @param address           Indirizzo del client
+     *
+     */
+    public void release(InetAddress address) {
+        this.sessions.decrementAndGet();
+        if(this.maxPerIp > 0) this.perIp.computeIfPresent(address, (k, v) -> (v <= 1) ? null : v - 1);
+    }
+
+    /**
+     *
+     * @fun                     rejectPool
+     * @brief                   Libera la sessione di un client rifiutato perche' il pool dei thread e' pieno
+     * @param address           Indirizzo del client
+     *
+     */
+    public void rejectPool(InetAddress address) {
+        release(address);
+        this.rejectedPool.increment();
+    }
+
+    /**
+     *
+     * @fun                     refuse
+     * @brief                   Invia BUSY al client e chiude la connessione. I byte gia' inviati dal client sono
+     *                          scartati prima della chiusura, altrimenti il reset della connessione potrebbe far
+     *                          perdere la risposta
+     * @param c                 Socket del client rifiutato
+     *
+     */
+    public void refuse(Socket c) {
+        try {
+            InputStream in = c.getInputStream();
+            int n;
+            while ((n = in.available()) > 0) in.skip(n);
+            c.getOutputStream().write(this.busy);
+            c.shutdownOutput();
+        } catch (IOException e) {
+            /** Il client ha gia' chiuso */
+        } finally {
+            try {
+                c.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        this.log.fine(Thread.currentThread().getName() + " Connessione di " + c.getInetAddress() + " rifiutata - Server occupato\n");
+    }
+
+    /**
+     *
+     * @fun                     refuse
+     * @brief                   Invia BUSY al client e chiude la connessione (versione per SocketChannel)
+     * @param c                 Canale del client rifiutato
+     *
+     */
+    public void refuse(SocketChannel c) {
+        try {
+            c.configureBlocking(false);
+            ByteBuffer drain = ByteBuffer.allocate(256);
+            while (c.read(drain) > 0) drain.clear();
+            c.write(ByteBuffer.wrap(this.busy));
+            c.shutdownOutput();
+        } catch (IOException e) {
+            /** Il client ha gia' chiuso */
+        } finally {
+            try {
+                c.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        this.log.fine(Thread.currentThread().getName() + " Connessione di " + c.socket().getInetAddress() + " rifiutata - Server occupato\n");
+    }
+
+    /**
+     *
+     * @fun                     sessions
+     * @brief                   Sessioni attualmente aperte
+     *
+     */
+    public int sessions() {
+        return this.sessions.get();
+    }
+
+    /**
+     *
+     * @fun                     rejected
+     * @brief                   Connessioni rifiutate in totale
+     *
+     */
+    public long rejected() {
+        return this.rejectedSessions.sum() + this.rejectedPerIp.sum() + this.rejectedPool.sum();
+    }
+
+    /**
+     *
+     * @fun                     logCounters
+     * @brief                   Riporta nel log i contatori delle connessioni rifiutate
+     *
+     */
+    public void logCounters() {
+        this.log.info(Thread.currentThread().getName() + " Connessioni rifiutate: limite sessioni " + this.rejectedSessions.sum() + " - limite per IP "
+                + this.rejectedPerIp.sum() + " - pool pieno " + this.rejectedPool.sum() + " (massimo " + this.peak.get() + " sessioni contemporanee)\n");
+    }
+
+}
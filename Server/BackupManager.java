@@ -1,16 +1,15 @@
 package Server;
-import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;    
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
 
 /**
  * 
@@ -24,8 +23,15 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
 public class BackupManager {
 
+    /** Variabili globali */
+    private static final int BUFFER_SIZE = 64*1024;
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_BINARY = "binary";
+
     /** Attributi */
     private final String JsonFilePath;                  // Path del file su cui andare a salvare/recuperare i file di backup
+    private final String format;                        // Formato con cui vengono scritti gli snapshot (json o binary)
+    private final WordsDictionary words;                // Dizionario usato dal formato binario per le parole giocate
 
     /**
      * 
@@ -36,6 +42,8 @@ public class BackupManager {
      */
     public BackupManager() throws FileNotFoundException {
         this.JsonFilePath = "UsersDatabase.json";
+        this.format = FORMAT_JSON;
+        this.words = null;
         if(Path.of(JsonFilePath).toFile().exists() && !Path.of(JsonFilePath).toFile().isFile()) throw new FileNotFoundException();
     }
 
@@ -49,20 +57,41 @@ public class BackupManager {
      * 
      */
     public BackupManager(String JsonFilePath) throws FileNotFoundException {
+        this(JsonFilePath, FORMAT_JSON, null);
+    }
+
+    /**
+     * 
+     * @fun                                 BackupManager
+     * @brief                               Metodo costruttore
+     * @param JsonFilePath                  Path del file da dove recuperare/aggiornare il contenuto informativo
+     * @param format                        Formato degli snapshot scritti (json o binary); in lettura il formato
+     *                                      viene riconosciuto dall'intestazione del file
+     * @param words                         Dizionario delle parole di gioco (necessario per il formato binario)
+     * @throws FileNotFoundException
+     * @throws IllegalArgumentException
+     * 
+     */
+    public BackupManager(String JsonFilePath, String format, WordsDictionary words) throws FileNotFoundException {
         
         /** Controllo argomenti */
         if(JsonFilePath.equals("")) throw new IllegalArgumentException();
+        if(!format.equals(FORMAT_JSON) && !format.equals(FORMAT_BINARY)) throw new IllegalArgumentException(format);
+        if(format.equals(FORMAT_BINARY) && words == null) throw new NullPointerException();
         if(Path.of(JsonFilePath).toFile().exists() && !Path.of(JsonFilePath).toFile().isFile()) throw new FileNotFoundException();
 
         this.JsonFilePath = JsonFilePath;
+        this.format = format;
+        this.words = words;
     }
 
     /**
      * 
      * @fun                 infoRecovery
-     * @brief               Recupera le informazioni di Utenti dal file json
+     * @brief               Recupera le informazioni di Utenti dal file di backup (json o binario)
      * @return              Lista di informazioni sugli utenti, null in caso di errore
-     * @throws FileNotFoundException
+     * @throws FileNotFoundException Se il backup e' binario ma non rileggibile (ad esempio scritto con un altro
+     *                      dizionario): il server non parte invece di sovrascriverlo con un database vuoto
      * 
      */
     public UsersDatabase infoRecovery() throws FileNotFoundException {
@@ -73,14 +102,23 @@ public class BackupManager {
         if(!database.exists()) return null;
         if((database.exists()) && (!database.isFile())) throw new FileNotFoundException();
 
-        /** Estraggo dal file gli utenti memorizzati */
-        try {
-            JsonFactory factory = new JsonFactory();
-            ObjectMapper mapper = new ObjectMapper();
-            JsonParser parser = factory.createParser(database);
-            mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            parser.setCodec(mapper);
-            u = parser.readValueAs(UsersDatabase.class);
+        /** Estraggo dal file gli utenti memorizzati, uno alla volta */
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(database), BUFFER_SIZE)) {
+            in.mark(4);
+            boolean binary = BinarySnapshotCodec.isBinary(in.readNBytes(4));
+            in.reset();
+            if(binary) {
+                if(this.words == null) throw new FileNotFoundException(JsonFilePath + ": snapshot binario senza dizionario");
+                try {
+                    u = BinarySnapshotCodec.read(in, this.words);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    throw new FileNotFoundException(JsonFilePath + ": " + e.getMessage());
+                }
+            }
+            else u = SnapshotCodec.read(in);
+        } catch (FileNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -89,30 +127,74 @@ public class BackupManager {
         return u;
     }
 
-    public void updateUsers(UsersDatabase ud) {
+    /**
+     * 
+     * @fun                 writeAtomically
+     * @brief               Scrive lo snapshot in streaming (nel formato configurato) su un file temporaneo e lo sostituisce al file di backup
+     *                      con una rename atomica: un arresto durante la scrittura lascia intatto il backup precedente
+     * @param users             Utenti da salvare
+     * @param totalWords        Numero totale di parole pubblicate
+     * @param journalGeneration Ultima generazione del journal inclusa nello snapshot
+     * @return              true in caso di successo, false altrimenti
+     * 
+     */
+    private boolean writeAtomically(Collection<Utente> users, int totalWords, long journalGeneration) {
+        File fileJson = new File(this.JsonFilePath);
+        File tmp = new File(this.JsonFilePath + ".tmp");
 
-        /** Controllo argomenti */
-        if(ud == null) throw new IllegalArgumentException();
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            BufferedOutputStream bout = new BufferedOutputStream(out, BUFFER_SIZE);
+            if(this.format.equals(FORMAT_BINARY)) BinarySnapshotCodec.write(bout, users, totalWords, journalGeneration, this.words);
+            else SnapshotCodec.write(bout, users, totalWords, journalGeneration);
+            bout.flush();
+            out.getFD().sync();
+        } catch (Exception e) {
+            e.printStackTrace();
+            tmp.delete();
+            return false;
+        }
 
-        /** Aggiorno il contenuto del file json */
-        File fileJson = new File(this.JsonFilePath);   
-        if(fileJson.exists()) fileJson.delete();
         try {
-            fileJson.createNewFile();
+            Files.move(tmp.toPath(), fileJson.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             e.printStackTrace();
-            return;
+            return false;
         }
+        return true;
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-        try (DataOutputStream dout = new DataOutputStream(new FileOutputStream(fileJson))) {
-            dout.writeBytes(mapper.writeValueAsString(ud));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
+    /**
+     * 
+     * @fun                 updateUsers
+     * @brief               Salva sul file json lo stato completo del database
+     * @param ud            Database da salvare
+     * @return              true in caso di successo, false altrimenti
+     * 
+     */
+    public boolean updateUsers(UsersDatabase ud) {
+
+        /** Controllo argomenti */
+        if(ud == null) throw new IllegalArgumentException();
+
+        return writeAtomically(ud.exportUsers(), ud.giveTotalWord(), ud.giveJournalGeneration());
+    }
+
+    /**
+     * 
+     * @fun                     writeSnapshot
+     * @brief                   Salva uno snapshot composto da copie degli utenti, nello stesso formato di updateUsers
+     * @param users             Copie degli utenti (possono essere create durante la scrittura)
+     * @param totalWords        Numero totale di parole pubblicate
+     * @param journalGeneration Ultima generazione del journal inclusa nello snapshot
+     * @return                  true in caso di successo, false altrimenti
+     * 
+     */
+    public boolean writeSnapshot(Collection<Utente> users, int totalWords, long journalGeneration) {
+
+        /** Controllo argomenti */
+        if(users == null) throw new IllegalArgumentException();
+
+        return writeAtomically(users, totalWords, journalGeneration);
     }
 
 }
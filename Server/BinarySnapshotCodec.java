@@ -0,0 +1,111 @@
+package Server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * @class                   BinarySnapshotCodec
+ * @brief                   Formato binario compatto dello snapshot degli utenti. Intestazione versionata (magic,
+ *                          versione, parole pubblicate, generazione del journal, impronta del dizionario) seguita da
+ *                          un record per utente preceduto dalla sua lunghezza; la lunghezza -1 chiude il file.
+ *                          Le parole giocate sono salvate come indici del dizionario e i suggerimenti a 2 bit per
+ *                          lettera, per cui il file va riletto con lo stesso dizionario con cui e' stato scritto
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class BinarySnapshotCodec {
+
+    /** Variabili globali */
+    public static final int MAGIC = 0x57524442;                 // "WRDB"
+    public static final short VERSION = 1;
+    private static final int END = -1;
+
+    /**
+     *
+     * @fun                     isBinary
+     * @brief                   Controlla se i primi byte di un file sono l'intestazione del formato binario
+     * @param head              Primi 4 byte del file
+     * @return                  true se il file e' in formato binario, false altrimenti
+     *
+     */
+    public static boolean isBinary(byte[] head) {
+        if(head.length < 4) return false;
+        int m = ((head[0] & 0xff) << 24) | ((head[1] & 0xff) << 16) | ((head[2] & 0xff) << 8) | (head[3] & 0xff);
+        return m == MAGIC;
+    }
+
+    /**
+     *
+     * @fun                     write
+     * @brief                   Scrive lo snapshot sullo stream (lo stream non viene chiuso)
+     * @param out               Stream di destinazione (bufferizzato dal chiamante)
+     * @param users             Utenti da salvare
+     * @param totalWords        Numero totale di parole pubblicate
+     * @param journalGeneration Ultima generazione del journal inclusa nello snapshot
+     * @param words             Dizionario delle parole di gioco
+     * @throws IOException
+     *
+     */
+    public static void write(OutputStream out, Collection<Utente> users, int totalWords, long journalGeneration, WordsDictionary words) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeShort(VERSION);
+        dout.writeInt(totalWords);
+        dout.writeLong(journalGeneration);
+        dout.writeLong(words.fingerprint());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream rout = new DataOutputStream(record);
+        for (Utente u : users) {
+            record.reset();
+            u.writeBinary(rout, words);
+            dout.writeInt(record.size());
+            record.writeTo(dout);
+        }
+        dout.writeInt(END);
+        dout.flush();
+    }
+
+    /**
+     *
+     * @fun                     read
+     * @brief                   Legge lo snapshot dallo stream inserendo gli utenti nel database man mano che vengono letti
+     * @param in                Stream di origine
+     * @param words             Dizionario delle parole di gioco
+     * @return                  Database ripristinato
+     * @throws IOException      Se il file non e' valido, ha una versione sconosciuta o e' stato scritto con un altro dizionario
+     *
+     */
+    public static UsersDatabase read(InputStream in, WordsDictionary words) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if(din.readInt() != MAGIC) throw new IOException("Snapshot binario: intestazione non valida");
+        short version = din.readShort();
+        if(version != VERSION) throw new IOException("Snapshot binario: versione " + version + " non supportata");
+        int totalWords = din.readInt();
+        long journalGeneration = din.readLong();
+        if(din.readLong() != words.fingerprint()) throw new IOException("Snapshot binario: scritto con un dizionario diverso");
+
+        ConcurrentHashMap<String, Utente> database = new ConcurrentHashMap<>();
+        int dim;
+        byte[] b = new byte[256];
+        while ((dim = din.readInt()) != END) {
+            if(dim < 0) throw new IOException("Snapshot binario: record non valido");
+            if(dim > b.length) b = new byte[Math.max(dim, 2*b.length)];
+            din.readFully(b, 0, dim);
+            Utente u = Utente.readBinary(new DataInputStream(new ByteArrayInputStream(b, 0, dim)), words);
+            database.put(u.getUsername(), u);
+        }
+
+        return new UsersDatabase(database, totalWords, journalGeneration);
+    }
+
+}
@@ -1,5 +1,7 @@
 package Server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -9,9 +11,11 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 
+import General.Protocol;
 import General.Utils;
 
 public class ClientRequest implements Runnable {
@@ -24,6 +28,9 @@ public class ClientRequest implements Runnable {
     private String ipSocialNetwork;
     private int portSocialNetwork;
     private Logger log;
+    private byte[] scratch;                         // Buffer riusato per le stringhe del protocollo binario
+    private int version;                            // Versione del protocollo binario concordata
+    private int requestId;                          // Identificativo della richiesta in corso (versione 2)
 
     public ClientRequest(UsersDatabase us, Socket client, String ipSocialNetowork, int portSocialNetwork, Logger log) {
         this.us = us;
@@ -31,26 +38,39 @@ public class ClientRequest implements Runnable {
         this.ipSocialNetwork = ipSocialNetowork;
         this.portSocialNetwork = portSocialNetwork;
         this.log = log;
+        this.scratch = new byte[256];
     }
 
-    private void shareUserAttempts() {
+    /**
+     * 
+     * @fun                         shareUserAttempts
+     * @brief                       Condivide sul social network i suggerimenti dell'ultimo gioco dell'utente
+     * @param us                    Database di gioco
+     * @param username              Username utente
+     * @param password              Password utente
+     * @param ipSocialNetwork       Indirizzo del gruppo multicast del social network
+     * @param portSocialNetwork     Porta del gruppo multicast del social network
+     * @param log                   File di log
+     * 
+     */
+    static void shareUserAttempts(UsersDatabase us, String username, String password, String ipSocialNetwork, int portSocialNetwork, Logger log) {
 
-        ArrayList<String> att = this.us.giveUserAttempt(usernameC, passwordC);
+        ArrayList<String> att = us.giveUserAttempt(username, password);
         StringBuilder sb = new StringBuilder();
         if(att == null) {
             return;
         }
 
-        sb.append(usernameC + "\n\n");
-        sb.append(this.us.giveTotalWord() + "/" + att.size() + "\n\n");
+        sb.append(username + "\n\n");
+        sb.append(us.giveTotalWord() + "/" + att.size() + "\n\n");
         for (String string : att) {
             sb.append("[" + string + "]\n");
         }
         try (DatagramSocket ds = new DatagramSocket()) {
-            InetAddress ia = InetAddress.getByName(this.ipSocialNetwork);
-            DatagramPacket dp = new DatagramPacket(sb.toString().getBytes(), sb.toString().getBytes().length, ia, this.portSocialNetwork);
+            InetAddress ia = InetAddress.getByName(ipSocialNetwork);
+            DatagramPacket dp = new DatagramPacket(sb.toString().getBytes(), sb.toString().getBytes().length, ia, portSocialNetwork);
             ds.send(dp);
-            this.log.info(Thread.currentThread().getName() + " " + "Invio suggerimenti a " + this.usernameC);
+            log.info(Thread.currentThread().getName() + " " + "Invio suggerimenti a " + username);
         } catch (Exception e) {
             e.printStackTrace();
             return;
@@ -58,33 +78,237 @@ public class ClientRequest implements Runnable {
 
     }
     
-    private void getLoginCred(DataInputStream dis) throws IOException {
+    /**
+     * 
+     * @fun                         guessStatus
+     * @brief                       Stato del protocollo binario corrispondente alla risposta di sendGuessedWord
+     * @param resend                Risposta del database di gioco (null in caso di errore)
+     * @return                      Stato della risposta a OP_GUESS
+     * 
+     */
+    static int guessStatus(String resend) {
+        if(resend == null || resend.equals("error")) return Protocol.GUESS_ERROR;
+        if(resend.equals("notAllow")) return Protocol.GUESS_NOT_ALLOWED;
+        if(resend.equals("justWin")) return Protocol.GUESS_ALREADY_WON;
+        if(resend.equals("notFound")) return Protocol.GUESS_NOT_FOUND;
+        if(resend.startsWith("win_")) return Protocol.GUESS_WIN;
+        if(resend.startsWith("timeout_")) return Protocol.GUESS_TIMEOUT;
+        if(resend.startsWith("maxAtt_")) return Protocol.GUESS_MAX_ATTEMPTS;
+        return Protocol.GUESS_HINT;
+    }
+
+    /**
+     * 
+     * @fun                         guessText
+     * @brief                       Inizio del testo da inviare con lo stato di OP_GUESS (senza il prefisso testuale)
+     * @param resend                Risposta del database di gioco
+     * @param status                Stato calcolato con guessStatus
+     * @return                      Indice del primo carattere del testo, resend.length() se il testo e' vuoto
+     * 
+     */
+    static int guessText(String resend, int status) {
+        switch (status) {
+            case Protocol.GUESS_HINT: return 0;
+            case Protocol.GUESS_WIN: return 4;
+            case Protocol.GUESS_TIMEOUT: return 8;
+            case Protocol.GUESS_MAX_ATTEMPTS: return 7;
+            default: return (resend == null) ? 0 : resend.length();
+        }
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     * 
+     * @fun                         readString
+     * @brief                       Legge una stringa del protocollo binario (u16 + UTF-8) usando il buffer della connessione
+     * 
+     */
+    private String readString(DataInputStream dis) throws IOException {
+        int n = dis.readUnsignedShort();
+        if(this.scratch.length < n) this.scratch = new byte[Math.max(n, this.scratch.length*2)];
+        dis.readFully(this.scratch, 0, n);
+        return new String(this.scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 
+     * @fun                         writeString
+     * @brief                       Scrive s a partire da from come stringa del protocollo binario (u16 + UTF-8)
+     * 
+     */
+    private void writeString(DataOutputStream dos, String s, int from) throws IOException {
+        int n = Protocol.utf8Length(s, from);
+        if(n > Protocol.MAX_STRING) throw new IOException("Stringa troppo lunga: " + n + " byte");
+        if(this.scratch.length < n) this.scratch = new byte[Math.max(n, this.scratch.length*2)];
+        Protocol.putUtf8(s, from, this.scratch, 0);
+        dos.writeShort(n);
+        dos.write(this.scratch, 0, n);
+    }
+
+    /**
+     * 
+     * @fun                         reply
+     * @brief                       Inizia la risposta alla richiesta in corso: identificativo (dalla versione 2) e stato
+     * 
+     */
+    private void reply(DataOutputStream dos, int status) throws IOException {
+        if(this.version >= Protocol.VERSION_PIPELINE) dos.writeInt(this.requestId);
+        dos.writeByte(status);
+    }
+
+    /**
+     * 
+     * @fun                         guess
+     * @brief                       Invia la parola al database di gioco e scrive stato e testo del risultato (con
+     *                              l'intestazione della risposta se single e' true, altrimenti come elemento di OP_GUESS_BATCH)
+     * 
+     */
+    private void guess(DataOutputStream dos, String word, boolean single) throws IOException {
+        String resend = this.us.sendGuessedWord(usernameC, passwordC, word);
+        int status = guessStatus(resend);
+        if(single) reply(dos, status);
+        else dos.writeByte(status);
+        writeString(dos, (resend == null) ? "" : resend, guessText(resend, status));
+        this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Risposta inviata al client --> " + resend + "\n");
+    }
+
+    /**
+     * 
+     * @fun                         binaryProtocol
+     * @brief                       Gestisce la connessione con il protocollo binario, dopo HELLO del client
+     * 
+     */
+    private void binaryProtocol(DataInputStream dis, DataOutputStream dos) throws IOException {
+
+        /** Concordo la versione: la piu' alta supportata da entrambi */
+        int version = dis.readUnsignedByte();
+        if(version < 1) {
+            this.log.warning(Thread.currentThread().getName() + " Versione del protocollo non valida: " + version + "\n");
+            return;
+        }
+        this.version = Math.min(version, Protocol.VERSION);
+        dos.writeInt(Protocol.HELLO);
+        dos.writeByte(this.version);
+        dos.flush();
+
+        boolean logged = false;
+        boolean logout = false;
+        while (!Thread.currentThread().isInterrupted() && !logout) {
+            if(this.version >= Protocol.VERSION_PIPELINE) this.requestId = dis.readInt();
+            int op = dis.read();
+            if(op == -1) throw new EOFException();
+            if(op == Protocol.OP_GUESS_BATCH && this.version < Protocol.VERSION_PIPELINE) op = 0;   // Non previsto in questa versione
+            if(!logged && op != Protocol.OP_LOGIN) {
+                this.log.warning(Thread.currentThread().getName() + " Richiesta " + op + " prima dell'accesso - Errore\n");
+                return;
+            }
+            switch (op) {
+
+                /** Le credenziali diventano quelle della sessione solo dopo un accesso riuscito */
+                case Protocol.OP_LOGIN:
+                    String username = readString(dis);
+                    String password = readString(dis);
+                    int code = logged ? 3 : this.us.loginUser(username, password);
+                    reply(dos, code);
+                    if(code == 0) {
+                        this.usernameC = username;
+                        this.passwordC = password;
+                        logged = true;
+                        this.log.info(Thread.currentThread().getName() + " Utente " + this.usernameC + " entrato nel server\n");
+                    }
+                break;
+
+                case Protocol.OP_PLAY:
+                    this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Richiesta di partecipare al gioco\n");
+                    reply(dos, this.us.playGame(usernameC, passwordC));
+                break;
+
+                case Protocol.OP_GUESS:
+                    guess(dos, readString(dis), true);
+                break;
+
+                /** Piu' parole in una sola richiesta: i risultati nello stesso ordine in una sola risposta */
+                case Protocol.OP_GUESS_BATCH:
+                    int n = dis.readUnsignedByte();
+                    this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Vuole indovinare " + n + " parole\n");
+                    reply(dos, 0);
+                    dos.writeByte(n);
+                    for (int i = 0; i < n; i++) guess(dos, readString(dis), false);
+                break;
+
+                case Protocol.OP_STATS:
+                    this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di elaborazione delle proprie statistiche\n");
+                    reply(dos, 0);
+                    writeString(dos, this.us.userStatistics(usernameC, passwordC), 0);
+                break;
+
+                case Protocol.OP_SHARE:
+                    this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di condividere i risultati di gioco\n");
+                    shareUserAttempts(this.us, usernameC, passwordC, this.ipSocialNetwork, this.portSocialNetwork, this.log);
+                    reply(dos, 0);
+                break;
+
+                case Protocol.OP_TIME:
+                    reply(dos, 0);
+                    dos.writeLong(this.us.remainingRoundMs());
+                break;
+
+                case Protocol.OP_LOGOUT:
+                    this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Disconnessione dal server\n");
+                    this.us.logoutUser(usernameC, passwordC);
+                    reply(dos, 0);
+                    logout = true;
+                break;
+
+                default:
+                    this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta non disponibile - Errore\n");
+                    this.us.logoutUser(usernameC, passwordC);
+                    return;
+            }
+
+            /** Con richieste in coda (pipelining) le risposte sono inviate insieme */
+            if(dis.available() == 0) dos.flush();
+        }
+    }
+
+    /*************************************/
+
+    private void getLoginCred(DataInputStream dis, int dim) throws IOException {
 
-        int dim;
         byte[] msg;
-        dim = dis.readInt();
         msg = dis.readNBytes(dim);
-        this.usernameC = new String(msg, 0, dim);
+        this.usernameC = new String(msg, 0, dim, StandardCharsets.UTF_8);
         dim = dis.readInt();
         msg = dis.readNBytes(dim);
-        this.passwordC = new String(msg, 0, dim);
+        this.passwordC = new String(msg, 0, dim, StandardCharsets.UTF_8);
     }
 
     @Override
     public void run() {
 
         try (
-            DataInputStream dis = new DataInputStream(client.getInputStream());
-            DataOutputStream dos = new DataOutputStream(client.getOutputStream());
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
         ) {
 
             /** Utente richiede accesso al database di gioco */
             this.log.info(Thread.currentThread().getName() + " " + "In attesa delle credenziali di accesso al server\n");
+            int dim = dis.readInt();
+
+            /** Client che richiede il protocollo binario */
+            if(dim == Protocol.HELLO) {
+                binaryProtocol(dis, dos);
+                return;
+            }
+
             while(true) {
-                getLoginCred(dis);
+                getLoginCred(dis, dim);
                 int code = this.us.loginUser(usernameC, passwordC);
                 dos.writeInt(code);
+                dos.flush();
                 if(code == 0) break;
+                dim = dis.readInt();
             }
             boolean logout = false;
             this.log.info(Thread.currentThread().getName() + " Utente " + this.usernameC + " entrato nel server\n");
@@ -135,10 +359,15 @@ public class ClientRequest implements Runnable {
     
                     case "share":
                         this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di condividere i risultati di gioco\n");
-                        shareUserAttempts();
+                        shareUserAttempts(this.us, usernameC, passwordC, this.ipSocialNetwork, this.portSocialNetwork, this.log);
                         dos.writeInt(0);
                     break;
                 
+                    /** Tempo rimanente del round corrente (ms) */
+                    case "time":
+                        dos.writeLong(this.us.remainingRoundMs());
+                    break;
+                
                     case "logout":
                         this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Disconnessione dal server\n");
                         this.us.logoutUser(usernameC, passwordC);
@@ -151,6 +380,7 @@ public class ClientRequest implements Runnable {
                         this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta non disponibile - Errore\n");
                         return;
                 }
+                if(dis.available() == 0) dos.flush();
             }
         } 
         catch (SocketException | EOFException e) {
@@ -0,0 +1,627 @@
+package Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+import General.Protocol;
+
+/**
+ *
+ * @class                   ClientSession
+ * @brief                   Stato di una connessione gestita dall'event loop non bloccante: decodifica i messaggi
+ *                          (dimensione + contenuto, come Utils.receiveMessage, oppure il protocollo binario se il client
+ *                          lo richiede con HELLO) e inoltra i comandi al database di gioco. Se le modifiche attendono
+ *                          il disco i messaggi sono elaborati da un worker, mentre l'event loop non legge la sessione;
+ *                          la condivisione dei risultati e' sempre inviata da un worker
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class ClientSession {
+
+    /** Variabili globali */
+    public static final int MAX_FRAME = 64*1024;
+    public static final int MAX_BINARY_FRAME = 4*MAX_FRAME;
+    private static final int BUFFER_SIZE = 1024;
+
+    /** Fasi del protocollo */
+    private static final int WAIT_USERNAME = 0;
+    private static final int WAIT_PASSWORD = 1;
+    private static final int WAIT_COMMAND = 2;
+    private static final int WAIT_GUESS = 3;
+
+    /** Attributi */
+    private SocketChannel client;
+    private UsersDatabase us;
+    private AdmissionControl admission;
+    private EventLoop loop;
+    private ExecutorService workers;
+    private boolean offload;                        // true se i messaggi sono elaborati dai worker
+    private boolean released;                       // true dopo aver restituito la sessione al controllo connessioni
+    private String ipSocialNetwork;
+    private int portSocialNetwork;
+    private Logger log;
+    private ByteBuffer input;
+    private ByteBuffer output;
+    private int state;
+    private boolean logged;
+    private boolean closing;
+    private boolean negotiated;                     // true dopo il primo messaggio (HELLO o username)
+    private boolean binary;                         // true se la connessione usa il protocollo binario
+    private int version;                            // Versione del protocollo binario concordata
+    private int requestId;                          // Identificativo della richiesta in corso (versione 2)
+    private String usernameC;
+    private String passwordC;
+
+    /**
+     *
+     * @fun                             ClientSession
+     * @brief                           Metodo costruttore
+     * @param us                        Database di gioco
+     * @param client                    Canale del client
+     * @param admission                 Controllo delle connessioni, a cui restituire la sessione alla chiusura
+     * @param ipSocialNetwork           Indirizzo del gruppo multicast del social network
+     * @param portSocialNetwork         Porta del gruppo multicast del social network
+     * @param loop                      Event loop a cui i worker restituiscono la sessione
+     * @param workers                   Pool delle richieste bloccanti
+     * @param log                       File di log
+     *
+     */
+    public ClientSession(UsersDatabase us, SocketChannel client, AdmissionControl admission, String ipSocialNetwork, int portSocialNetwork,
+                         EventLoop loop, ExecutorService workers, Logger log) {
+        this.us = us;
+        this.client = client;
+        this.admission = admission;
+        this.loop = loop;
+        this.workers = workers;
+        this.offload = us.blockingPersistence();
+        this.released = false;
+        this.ipSocialNetwork = ipSocialNetwork;
+        this.portSocialNetwork = portSocialNetwork;
+        this.log = log;
+        this.input = ByteBuffer.allocate(BUFFER_SIZE);
+        this.output = ByteBuffer.allocate(BUFFER_SIZE);
+        this.state = WAIT_USERNAME;
+        this.logged = false;
+        this.closing = false;
+        this.negotiated = false;
+        this.binary = false;
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 ensureOutput
+     * @brief               Garantisce che il buffer di uscita possa contenere altri n byte
+     * @param n             Numero di byte da scrivere
+     *
+     */
+    private void ensureOutput(int n) {
+        if(this.output.remaining() >= n) return;
+        ByteBuffer b = ByteBuffer.allocate(Math.max(this.output.capacity()*2, this.output.position() + n));
+        this.output.flip();
+        b.put(this.output);
+        this.output = b;
+    }
+
+    /**
+     *
+     * @fun                 writeInt
+     * @brief               Accoda un intero di risposta (equivalente di DataOutputStream.writeInt)
+     * @param v             Valore da inviare
+     *
+     */
+    private void writeInt(int v) {
+        ensureOutput(4);
+        this.output.putInt(v);
+    }
+
+    /**
+     *
+     * @fun                 writeByte
+     * @brief               Accoda un byte di stato del protocollo binario
+     * @param v             Valore da inviare
+     *
+     */
+    private void writeByte(int v) {
+        ensureOutput(1);
+        this.output.put((byte) v);
+    }
+
+    /**
+     *
+     * @fun                 writeLong
+     * @brief               Accoda un long di risposta (equivalente di DataOutputStream.writeLong)
+     * @param v             Valore da inviare
+     *
+     */
+    private void writeLong(long v) {
+        ensureOutput(8);
+        this.output.putLong(v);
+    }
+
+    /**
+     *
+     * @fun                 writeMessage
+     * @brief               Accoda un messaggio di risposta (equivalente di Utils.sendMessage)
+     * @param msg           Messaggio da inviare
+     *
+     */
+    private void writeMessage(String msg) {
+        byte[] b = msg.getBytes(StandardCharsets.UTF_8);
+        ensureOutput(4 + b.length);
+        this.output.putInt(b.length);
+        this.output.put(b);
+    }
+
+    /**
+     *
+     * @fun                 writeString
+     * @brief               Accoda s a partire da from come stringa del protocollo binario (u16 + UTF-8), codificata
+     *                      direttamente nel buffer di uscita
+     *
+     */
+    private void writeString(String s, int from) {
+        int n = Protocol.utf8Length(s, from);
+        if(n > Protocol.MAX_STRING) throw new IllegalArgumentException();
+        ensureOutput(2 + n);
+        this.output.putShort((short) n);
+        Protocol.putUtf8(s, from, this.output.array(), this.output.arrayOffset() + this.output.position());
+        this.output.position(this.output.position() + n);
+    }
+
+    /**
+     *
+     * @fun                 readString
+     * @brief               Estrae una stringa del protocollo binario (u16 + UTF-8) direttamente dal buffer di ingresso
+     *
+     */
+    private String readString() {
+        int n = this.input.getShort() & 0xFFFF;
+        String s = new String(this.input.array(), this.input.arrayOffset() + this.input.position(), n, StandardCharsets.UTF_8);
+        this.input.position(this.input.position() + n);
+        return s;
+    }
+
+    /**
+     *
+     * @fun                 textFrame
+     * @brief               Estrae ed elabora un messaggio testuale (o HELLO se e' il primo messaggio)
+     * @return              0 se elaborato, altrimenti i byte necessari per il messaggio completo (-1 se non valido)
+     *
+     */
+    private int textFrame() {
+        if(this.input.remaining() < 4) return 4;
+        int dim = this.input.getInt(this.input.position());
+
+        /** Il client richiede il protocollo binario */
+        if(!this.negotiated && dim == Protocol.HELLO) {
+            if(this.input.remaining() < 5) return 5;
+            this.input.getInt();
+            int version = this.input.get() & 0xFF;
+            if(version < 1) return -1;
+            this.negotiated = true;
+            this.binary = true;
+            this.version = Math.min(version, Protocol.VERSION);
+            ensureOutput(5);
+            this.output.putInt(Protocol.HELLO);
+            this.output.put((byte) this.version);
+            return 0;
+        }
+
+        if(dim < 0 || dim > MAX_FRAME) return -1;
+        if(this.input.remaining() < 4 + dim) return 4 + dim;
+        this.negotiated = true;
+        this.input.getInt();
+        byte[] msg = new byte[dim];
+        this.input.get(msg);
+        handleFrame(new String(msg, 0, dim, StandardCharsets.UTF_8));
+        return 0;
+    }
+
+    /**
+     *
+     * @fun                 binaryFrame
+     * @brief               Estrae ed elabora una richiesta del protocollo binario
+     * @return              0 se elaborata, altrimenti i byte necessari per la richiesta completa (-1 se non valida)
+     *
+     */
+    private int binaryFrame() {
+        int p = this.input.position();
+        int rem = this.input.remaining();
+        if(rem < 1) return 1;
+
+        /** Dimensione della richiesta: identificativo (dalla versione 2), opcode e stringhe dei suoi argomenti */
+        int head = (this.version >= Protocol.VERSION_PIPELINE) ? 4 : 0;
+        if(rem < head + 1) return head + 1;
+        int op = this.input.get(p + head) & 0xFF;
+        int len = head + 1;
+        int strings = (op == Protocol.OP_LOGIN) ? 2 : (op == Protocol.OP_GUESS) ? 1 : 0;
+        if(op == Protocol.OP_GUESS_BATCH && head > 0) {
+            if(rem < len + 1) return len + 1;
+            strings = this.input.get(p + len) & 0xFF;
+            len++;
+        }
+        for (int i = 0; i < strings; i++) {
+            if(rem < len + 2) return len + 2;
+            len += 2 + (this.input.getShort(p + len) & 0xFFFF);
+            if(len > MAX_BINARY_FRAME) return -1;
+        }
+        if(rem < len) return len;
+
+        if(head > 0) this.requestId = this.input.getInt();
+        this.input.get();
+        if(op == Protocol.OP_GUESS_BATCH && head == 0) op = 0;      // Non previsto in questa versione
+        if(!this.logged && op != Protocol.OP_LOGIN) {
+            this.log.warning(Thread.currentThread().getName() + " Richiesta " + op + " prima dell'accesso - Errore\n");
+            return -1;
+        }
+        handleBinary(op);
+        return 0;
+    }
+
+    /**
+     *
+     * @fun                 reply
+     * @brief               Inizia la risposta alla richiesta in corso: identificativo (dalla versione 2) e stato
+     * @param status        Stato della risposta
+     *
+     */
+    private void reply(int status) {
+        if(this.version >= Protocol.VERSION_PIPELINE) {
+            ensureOutput(4);
+            this.output.putInt(this.requestId);
+        }
+        writeByte(status);
+    }
+
+    /**
+     *
+     * @fun                 share
+     * @brief               Condivide i risultati dell'ultima partita sul gruppo multicast del social network senza
+     *                      occupare l'event loop (la risposta al client non dipende dall'invio)
+     *
+     */
+    private void share() {
+        String username = this.usernameC;
+        String password = this.passwordC;
+        Runnable r = () -> ClientRequest.shareUserAttempts(this.us, username, password, this.ipSocialNetwork, this.portSocialNetwork, this.log);
+        if(this.offload) {
+            r.run();
+            return;
+        }
+        try {
+            this.workers.execute(r);
+        } catch (RejectedExecutionException e) {
+            r.run();
+        }
+    }
+
+    /**
+     *
+     * @fun                 guess
+     * @brief               Invia la parola al database di gioco e accoda stato e testo del risultato (con l'intestazione
+     *                      della risposta se single e' true, altrimenti come elemento di OP_GUESS_BATCH)
+     *
+     */
+    private void guess(String word, boolean single) {
+        String resend = this.us.sendGuessedWord(usernameC, passwordC, word);
+        int status = ClientRequest.guessStatus(resend);
+        if(single) reply(status);
+        else writeByte(status);
+        writeString((resend == null) ? "" : resend, ClientRequest.guessText(resend, status));
+        this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Risposta inviata al client --> " + resend + "\n");
+    }
+
+    /**
+     *
+     * @fun                 handleBinary
+     * @brief               Esegue una richiesta del protocollo binario (gli argomenti sono nel buffer di ingresso)
+     * @param op            Opcode della richiesta
+     *
+     */
+    private void handleBinary(int op) {
+
+        switch (op) {
+
+            /** Le credenziali diventano quelle della sessione solo dopo un accesso riuscito */
+            case Protocol.OP_LOGIN:
+                String username = readString();
+                String password = readString();
+                int code = this.logged ? 3 : this.us.loginUser(username, password);
+                reply(code);
+                if(code == 0) {
+                    this.usernameC = username;
+                    this.passwordC = password;
+                    this.logged = true;
+                    this.log.info(Thread.currentThread().getName() + " Utente " + this.usernameC + " entrato nel server\n");
+                }
+            break;
+
+            case Protocol.OP_PLAY:
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Richiesta di partecipare al gioco\n");
+                reply(this.us.playGame(usernameC, passwordC));
+            break;
+
+            case Protocol.OP_GUESS:
+                guess(readString(), true);
+            break;
+
+            /** Piu' parole in una sola richiesta: i risultati nello stesso ordine in una sola risposta */
+            case Protocol.OP_GUESS_BATCH:
+                int n = this.input.get() & 0xFF;
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Vuole indovinare " + n + " parole\n");
+                reply(0);
+                writeByte(n);
+                for (int i = 0; i < n; i++) guess(readString(), false);
+            break;
+
+            case Protocol.OP_STATS:
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di elaborazione delle proprie statistiche\n");
+                reply(0);
+                writeString(this.us.userStatistics(usernameC, passwordC), 0);
+            break;
+
+            case Protocol.OP_SHARE:
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di condividere i risultati di gioco\n");
+                share();
+                reply(0);
+            break;
+
+            case Protocol.OP_TIME:
+                reply(0);
+                writeLong(this.us.remainingRoundMs());
+            break;
+
+            case Protocol.OP_LOGOUT:
+                this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Disconnessione dal server\n");
+                this.us.logoutUser(usernameC, passwordC);
+                this.logged = false;
+                reply(0);
+                this.closing = true;
+            break;
+
+            default:
+                this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta non disponibile - Errore\n");
+                this.closing = true;
+            break;
+        }
+    }
+
+    /**
+     *
+     * @fun                 handleFrame
+     * @brief               Elabora un messaggio completo ricevuto dal client in base alla fase del protocollo
+     * @param msg           Messaggio ricevuto
+     *
+     */
+    private void handleFrame(String msg) {
+
+        switch (this.state) {
+
+            /** Credenziali di accesso */
+            case WAIT_USERNAME:
+                this.usernameC = msg;
+                this.state = WAIT_PASSWORD;
+            break;
+
+            case WAIT_PASSWORD:
+                this.passwordC = msg;
+                int code = this.us.loginUser(usernameC, passwordC);
+                writeInt(code);
+                if(code == 0) {
+                    this.logged = true;
+                    this.state = WAIT_COMMAND;
+                    this.log.info(Thread.currentThread().getName() + " Utente " + this.usernameC + " entrato nel server\n");
+                } else this.state = WAIT_USERNAME;
+            break;
+
+            /** Parola da indovinare inviata dopo il comando "gw" */
+            case WAIT_GUESS:
+                this.state = WAIT_COMMAND;
+                String resend = this.us.sendGuessedWord(usernameC, passwordC, msg);
+                if(resend == null) {
+                    writeMessage("error");
+                    this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " - Errore durante confronto parola\n");
+                } else {
+                    writeMessage(resend);
+                    this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Risposta inviata al client --> " + resend + "\n");
+                }
+            break;
+
+            default:
+                handleCommand(msg);
+            break;
+        }
+    }
+
+    /**
+     *
+     * @fun                 handleCommand
+     * @brief               Esegue un comando dell'utente gia' autenticato
+     * @param cmd           Comando ricevuto
+     *
+     */
+    private void handleCommand(String cmd) {
+
+        switch (cmd) {
+
+            /** Richiesta del client di giocare all'ultimo gioco */
+            case "play":
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Richiesta di partecipare al gioco\n");
+                writeInt(this.us.playGame(usernameC, passwordC));
+            break;
+
+            case "gw":
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " - Vuole indovinare la parola segreta\n");
+                this.state = WAIT_GUESS;
+            break;
+
+            case "statistics":
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di elaborazione delle proprie statistiche\n");
+                writeMessage(this.us.userStatistics(usernameC, passwordC));
+            break;
+
+            case "share":
+                this.log.info(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta di condividere i risultati di gioco\n");
+                share();
+                writeInt(0);
+            break;
+
+            /** Tempo rimanente del round corrente (ms) */
+            case "time":
+                writeLong(this.us.remainingRoundMs());
+            break;
+
+            case "logout":
+                this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Disconnessione dal server\n");
+                this.us.logoutUser(usernameC, passwordC);
+                this.logged = false;
+                writeInt(0);
+                this.closing = true;
+            break;
+
+            default:
+                this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Richiesta non disponibile - Errore\n");
+                this.closing = true;
+            break;
+        }
+    }
+
+    /**
+     *
+     * @fun                 frames
+     * @brief               Estrae ed elabora tutti i messaggi completi presenti nel buffer di ingresso (in lettura)
+     * @return              false se la connessione e' stata chiusa per un messaggio non valido
+     *
+     */
+    private boolean frames() {
+        while (!this.closing) {
+            int need = this.binary ? binaryFrame() : textFrame();
+            if(need == 0) continue;
+            if(need < 0) {
+                this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Messaggio non valido - Chiusura connessione\n");
+                close();
+                return false;
+            }
+
+            /** Messaggio incompleto: mi assicuro che il buffer possa contenerlo */
+            if(this.input.capacity() < need) {
+                ByteBuffer b = ByteBuffer.allocate(need);
+                b.put(this.input);
+                this.input = b;
+                this.input.flip();
+            }
+            break;
+        }
+        return true;
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     onReadable
+     * @brief                   Legge i byte disponibili sul canale ed elabora tutti i messaggi completi, direttamente
+     *                          oppure su un worker se le modifiche attendono il disco: fino al ritorno della sessione
+     *                          l'event loop non la seleziona piu'
+     * @param key               Chiave di selezione del canale
+     * @throws IOException
+     *
+     */
+    public void onReadable(SelectionKey key) throws IOException {
+
+        /** Leggo quanto disponibile senza bloccare */
+        if(this.client.read(this.input) == -1) {
+            close();
+            return;
+        }
+
+        /** Estraggo tutti i messaggi completi presenti nel buffer */
+        this.input.flip();
+        if(this.offload) {
+            key.interestOps(0);
+            try {
+                this.workers.execute(() -> {
+                    try {
+                        if(frames()) this.loop.resume(key);
+                    } catch (RuntimeException e) {
+                        close();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+            return;
+        }
+        if(!frames()) return;
+        this.input.compact();
+
+        onWritable(key);
+    }
+
+    /**
+     *
+     * @fun                     onResumed
+     * @brief                   Sessione restituita dal worker che ne ha elaborato i messaggi: invia le risposte e
+     *                          riprende la lettura
+     * @param key               Chiave di selezione del canale
+     * @throws IOException
+     *
+     */
+    public void onResumed(SelectionKey key) throws IOException {
+        this.input.compact();
+        onWritable(key);
+    }
+
+    /**
+     *
+     * @fun                     onWritable
+     * @brief                   Invia le risposte in coda; se il canale non accetta tutto resta in attesa di OP_WRITE
+     * @param key               Chiave di selezione del canale
+     * @throws IOException
+     *
+     */
+    public void onWritable(SelectionKey key) throws IOException {
+
+        this.output.flip();
+        this.client.write(this.output);
+        boolean pending = this.output.hasRemaining();
+        this.output.compact();
+
+        if(pending) key.interestOps(SelectionKey.OP_WRITE);
+        else if(this.closing) close();
+        else key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Chiude la connessione effettuando il logout automatico dell'utente
+     *
+     */
+    public void close() {
+        if(this.logged) {
+            this.log.warning(Thread.currentThread().getName() + " " + this.usernameC + " Perdita di connessione con il client - Fase di logout automatico\n");
+            this.us.logoutUser(usernameC, passwordC);
+            this.logged = false;
+        }
+        try {
+            this.client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if(!this.released) {
+            this.released = true;
+            this.admission.release(this.client.socket().getInetAddress());
+        }
+    }
+
+}
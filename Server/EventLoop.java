@@ -0,0 +1,149 @@
+package Server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @class                   EventLoop
+ * @brief                   Thread che gestisce, tramite un proprio Selector, un sottoinsieme delle connessioni dei client.
+ *                          Le richieste che possono attendere il disco o la rete sono eseguite dal pool dei worker, e
+ *                          la sessione torna all'event loop, che invia le risposte, quando il worker ha finito
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class EventLoop implements Runnable {
+
+    /** Attributi */
+    private Selector selector;
+    private ConcurrentLinkedQueue<SocketChannel> pending;
+    private ConcurrentLinkedQueue<SelectionKey> resumed;    // Sessioni restituite dai worker
+    private ExecutorService workers;
+    private UsersDatabase us;
+    private AdmissionControl admission;
+    private String ipSocialNetwork;
+    private int portSocialNetwork;
+    private Logger log;
+
+    /**
+     *
+     * @fun                             EventLoop
+     * @brief                           Metodo costruttore
+     * @param us                        Database di gioco
+     * @param admission                 Controllo delle connessioni, a cui restituire le sessioni chiuse
+     * @param ipSocialNetwork           Indirizzo del gruppo multicast del social network
+     * @param portSocialNetwork         Porta del gruppo multicast del social network
+     * @param workers                   Pool delle richieste bloccanti (condiviso tra gli event loop)
+     * @param log                       File di log
+     * @throws IOException
+     *
+     */
+    public EventLoop(UsersDatabase us, AdmissionControl admission, String ipSocialNetwork, int portSocialNetwork, ExecutorService workers, Logger log) throws IOException {
+        this.selector = Selector.open();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.resumed = new ConcurrentLinkedQueue<>();
+        this.workers = workers;
+        this.us = us;
+        this.admission = admission;
+        this.ipSocialNetwork = ipSocialNetwork;
+        this.portSocialNetwork = portSocialNetwork;
+        this.log = log;
+    }
+
+    /**
+     *
+     * @fun                     register
+     * @brief                   Affida una nuova connessione a questo event loop
+     * @param client            Canale del client appena accettato
+     *
+     */
+    public void register(SocketChannel client) {
+        this.pending.add(client);
+        this.selector.wakeup();
+    }
+
+    /**
+     *
+     * @fun                     resume
+     * @brief                   Restituisce all'event loop una sessione le cui richieste sono state eseguite da un worker
+     * @param key               Chiave di selezione della sessione
+     *
+     */
+    public void resume(SelectionKey key) {
+        this.resumed.add(key);
+        this.selector.wakeup();
+    }
+
+    /**
+     *
+     * @fun                     run
+     * @brief                   Ciclo di gestione degli eventi di lettura/scrittura delle connessioni
+     *
+     */
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                this.selector.select();
+
+                /** Registro le connessioni affidate dall'acceptor */
+                SocketChannel c;
+                while ((c = this.pending.poll()) != null) {
+                    try {
+                        c.configureBlocking(false);
+                        c.register(this.selector, SelectionKey.OP_READ, new ClientSession(us, c, admission, ipSocialNetwork, portSocialNetwork, this, workers, log));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        this.admission.release(c.socket().getInetAddress());
+                        c.close();
+                    }
+                }
+
+                /** Invio le risposte delle sessioni restituite dai worker */
+                SelectionKey k;
+                while ((k = this.resumed.poll()) != null) {
+                    ClientSession s = (ClientSession) k.attachment();
+                    try {
+                        if(k.isValid()) s.onResumed(k);
+                    } catch (Exception e) {
+                        s.close();
+                    }
+                }
+
+                /** Gestisco gli eventi pronti */
+                Iterator<SelectionKey> i = this.selector.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    SelectionKey key = i.next();
+                    i.remove();
+                    ClientSession s = (ClientSession) key.attachment();
+                    try {
+                        if(key.isReadable()) s.onReadable(key);
+                        else if(key.isWritable()) s.onWritable(key);
+                    } catch (Exception e) {
+                        s.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            /** In fase di arresto chiudo ogni connessione ancora aperta */
+            for (SelectionKey key : this.selector.keys()) {
+                ((ClientSession) key.attachment()).close();
+            }
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
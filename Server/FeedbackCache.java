@@ -0,0 +1,155 @@
+package Server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @class                   FeedbackCache
+ * @brief                   Cache limitata dei suggerimenti del round corrente, indicizzata per parola tentata:
+ *                          le parole di apertura piu' comuni vengono valutate una sola volta per round.
+ *                          Il contenuto e' legato al FeedbackScorer del round e viene sostituito in blocco
+ *                          quando viene pubblicata una nuova parola. Nessuna voce viene scartata durante il round:
+ *                          a cache piena le nuove parole sono solo calcolate (contatore rejected), cosi' restano
+ *                          le parole arrivate per prime, cioe' le aperture piu' comuni
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class FeedbackCache {
+
+    /**
+     *
+     * @class               Round
+     * @brief               Suggerimenti memorizzati per lo scorer di un round: pubblicati insieme con un'unica scrittura.
+     *                      Un posto viene riservato su slots prima dell'inserimento, quindi la mappa non supera mai
+     *                      la capacita' anche con piu' miss contemporanei
+     *
+     */
+    private static class Round {
+        final FeedbackScorer scorer;
+        final ConcurrentHashMap<String, Integer> cache;
+        final AtomicInteger slots;
+
+        Round(FeedbackScorer scorer) {
+            this.scorer = scorer;
+            this.cache = new ConcurrentHashMap<>();
+            this.slots = new AtomicInteger();
+        }
+    }
+
+    /** Attributi */
+    private final int capacity;
+    private volatile Round round;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder rejected;
+
+    /**
+     *
+     * @fun                     FeedbackCache
+     * @brief                   Metodo costruttore
+     * @param capacity          Numero massimo di parole memorizzate per round (0 disabilita la cache)
+     *
+     */
+    public FeedbackCache(int capacity) {
+        if(capacity < 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.round = new Round(null);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     *
+     * @fun                     newRound
+     * @brief                   Associa la cache al nuovo round scartando i suggerimenti del precedente
+     * @param scorer            Scorer della nuova parola segreta
+     *
+     */
+    public void newRound(FeedbackScorer scorer) {
+        this.round = new Round(scorer);
+    }
+
+    /**
+     *
+     * @fun                     score
+     * @brief                   Restituisce i suggerimenti di un tentativo, calcolandoli solo alla prima richiesta
+     * @param scorer            Scorer del round corrente
+     * @param guess             Parola tentata
+     * @return                  Codice impacchettato dei suggerimenti (vedi FeedbackScorer.score)
+     *
+     */
+    public int score(FeedbackScorer scorer, String guess) {
+
+        /** Scorer di un round diverso da quello della cache: nessun riuso */
+        Round r = this.round;
+        if(this.capacity == 0 || scorer != r.scorer) {
+            this.misses.increment();
+            return scorer.score(guess);
+        }
+
+        ConcurrentHashMap<String, Integer> c = r.cache;
+        Integer code = c.get(guess);
+        if(code != null) {
+            this.hits.increment();
+            return code;
+        }
+        this.misses.increment();
+        int res = scorer.score(guess);
+
+        /** Riservo un posto: a cache piena il risultato non viene memorizzato */
+        if(r.slots.incrementAndGet() > this.capacity) {
+            r.slots.decrementAndGet();
+            this.rejected.increment();
+            return res;
+        }
+
+        /** La stessa parola inserita nel frattempo da un altro thread: restituisco il posto */
+        if(c.putIfAbsent(guess, res) != null) r.slots.decrementAndGet();
+        return res;
+    }
+
+    /**
+     *
+     * @fun                     hits
+     * @brief                   Numero totale di richieste servite dalla cache
+     *
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     *
+     * @fun                     misses
+     * @brief                   Numero totale di richieste calcolate dallo scorer
+     *
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     *
+     * @fun                     rejected
+     * @brief                   Numero totale di parole non memorizzate perche' la cache del round era piena
+     *
+     */
+    public long rejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     *
+     * @fun                     size
+     * @brief                   Numero di parole memorizzate per il round corrente
+     *
+     */
+    public int size() {
+        return this.round.cache.size();
+    }
+
+}
@@ -0,0 +1,215 @@
+package Server;
+
+/**
+ *
+ * @class                   FeedbackScorer
+ * @brief                   Calcolo dei suggerimenti (+ lettera al posto giusto, ? lettera presente, X lettera assente)
+ *                          di un tentativo rispetto alla parola segreta di un round. Le posizioni di ogni lettera
+ *                          nella parola segreta sono precalcolate una volta per round; il confronto e' una sola
+ *                          passata sui caratteri, senza allocazioni, e il risultato e' un codice int impacchettato
+ *                          (2 bit per lettera, lunghezza nei 4 bit alti). L'oggetto e' immutabile e thread-safe
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class FeedbackScorer {
+
+    /** Variabili globali */
+    public static final int MAX_LETTERS = 14;               // 14 lettere * 2 bit + 4 bit di lunghezza
+    public static final int PLUS = 1;                       // Lettera al posto giusto
+    public static final int QUESTION = 2;                   // Lettera presente in un'altra posizione
+    public static final int MISS = 3;                       // Lettera assente
+    private static final char[] SYMBOLS = { ' ', '+', '?', 'X' };
+
+    /** Attributi */
+    private final String secret;
+    private final int[] positions;                          // Per ogni lettera a-z, maschera delle posizioni nella parola segreta
+
+    /**
+     *
+     * @fun                             FeedbackScorer
+     * @brief                           Metodo costruttore: precalcola la tabella delle lettere della parola segreta
+     * @param secret                    Parola segreta del round
+     * @throws IllegalArgumentException Se la parola supera MAX_LETTERS lettere
+     *
+     */
+    public FeedbackScorer(String secret) {
+
+        /** Controllo argomenti */
+        if(secret == null) throw new NullPointerException();
+        if(secret.length() > MAX_LETTERS) throw new IllegalArgumentException();
+
+        this.secret = secret;
+        this.positions = new int[26];
+        for (int i = 0; i < secret.length(); i++) {
+            char c = secret.charAt(i);
+            if(c >= 'a' && c <= 'z') this.positions[c - 'a'] |= 1 << i;
+        }
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 positionsOf
+     * @brief               Maschera delle posizioni di una lettera nella parola segreta
+     *
+     */
+    private int positionsOf(char c) {
+        if(c >= 'a' && c <= 'z') return this.positions[c - 'a'];
+        int mask = 0;
+        for (int i = 0; i < this.secret.length(); i++) {
+            if(this.secret.charAt(i) == c) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                 secret
+     * @brief               Restituisce la parola segreta del round
+     * @return              Parola segreta
+     *
+     */
+    public String secret() {
+        return this.secret;
+    }
+
+    /**
+     *
+     * @fun                 score
+     * @brief               Calcola i suggerimenti di un tentativo. Le lettere sono valutate da sinistra a destra:
+     *                      una lettera al posto giusto consuma la propria posizione, altrimenti consuma la prima
+     *                      occorrenza ancora libera della stessa lettera nella parola segreta
+     * @param guess         Parola tentata
+     * @return              Codice impacchettato dei suggerimenti, -1 se il tentativo e' piu' lungo della parola segreta
+     *
+     */
+    public int score(String guess) {
+        int n = guess.length();
+        if(n > this.secret.length()) return -1;
+
+        int used = 0;
+        int code = n << 28;
+        for (int i = 0; i < n; i++) {
+            char c = guess.charAt(i);
+            int r;
+            if((this.secret.charAt(i) == c) && ((used & (1 << i)) == 0)) {
+                used |= 1 << i;
+                r = PLUS;
+            } else {
+                int free = positionsOf(c) & ~used;
+                if(free == 0) r = MISS;
+                else {
+                    used |= Integer.lowestOneBit(free);
+                    r = QUESTION;
+                }
+            }
+            code |= r << (2*i);
+        }
+        return code;
+    }
+
+    /**
+     *
+     * @fun                 length
+     * @brief               Numero di lettere di un codice di suggerimenti
+     * @param code          Codice impacchettato
+     * @return              Numero di lettere
+     *
+     */
+    public static int length(int code) {
+        return code >>> 28;
+    }
+
+    /**
+     *
+     * @fun                 letterAt
+     * @brief               Esito della lettera i-esima di un codice di suggerimenti
+     * @param code          Codice impacchettato
+     * @param i             Posizione della lettera
+     * @return              PLUS, QUESTION o MISS
+     *
+     */
+    public static int letterAt(int code, int i) {
+        return (code >>> (2*i)) & 3;
+    }
+
+    /**
+     *
+     * @fun                 isWin
+     * @brief               Controlla se il codice indica la parola indovinata (tutte le lettere al posto giusto)
+     * @param code          Codice impacchettato
+     * @return              true se tutte le lettere sono '+', false altrimenti
+     *
+     */
+    public static boolean isWin(int code) {
+        int n = length(code);
+        for (int i = 0; i < n; i++) {
+            if(letterAt(code, i) != PLUS) return false;
+        }
+        return n > 0;
+    }
+
+    /**
+     *
+     * @fun                 encode
+     * @brief               Impacchetta una stringa di suggerimenti ("++?X...")
+     * @param feedback      Stringa di suggerimenti
+     * @return              Codice impacchettato, -1 se la stringa non e' valida
+     *
+     */
+    public static int encode(String feedback) {
+        int n = feedback.length();
+        if(n > MAX_LETTERS) return -1;
+        int code = n << 28;
+        for (int i = 0; i < n; i++) {
+            int r;
+            switch (feedback.charAt(i)) {
+                case '+': r = PLUS; break;
+                case '?': r = QUESTION; break;
+                case 'X': r = MISS; break;
+                default: return -1;
+            }
+            code |= r << (2*i);
+        }
+        return code;
+    }
+
+    /**
+     *
+     * @fun                 appendTo
+     * @brief               Scrive i suggerimenti di un codice in un buffer riutilizzabile
+     * @param code          Codice impacchettato
+     * @param sb            Buffer di destinazione
+     * @return              Il buffer passato
+     *
+     */
+    public static StringBuilder appendTo(int code, StringBuilder sb) {
+        int n = length(code);
+        for (int i = 0; i < n; i++) {
+            sb.append(SYMBOLS[letterAt(code, i)]);
+        }
+        return sb;
+    }
+
+    /**
+     *
+     * @fun                 decode
+     * @brief               Converte un codice nella stringa di suggerimenti inviata al client
+     * @param code          Codice impacchettato
+     * @return              Stringa di suggerimenti ("++?X...")
+     *
+     */
+    public static String decode(int code) {
+        int n = length(code);
+        char[] c = new char[n];
+        for (int i = 0; i < n; i++) {
+            c[i] = SYMBOLS[letterAt(code, i)];
+        }
+        return new String(c);
+    }
+
+}
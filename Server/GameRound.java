@@ -0,0 +1,45 @@
+package Server;
+
+/**
+ *
+ * @class                   GameRound
+ * @brief                   Round di gioco immutabile: parola segreta, tabella delle lettere, traduzione, numero del
+ *                          round e intervallo di validita'. Il database pubblica ogni nuovo round con un'unica
+ *                          scrittura e chi valuta un tentativo legge il round una sola volta, per cui vede sempre uno
+ *                          stato coerente senza lock e un tentativo a cavallo del cambio parola appartiene al round letto
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public final class GameRound {
+
+    /** Attributi */
+    public final long id;                                   // Numero del round (parole pubblicate fino a questo round)
+    public final String secretWord;
+    public final FeedbackScorer scorer;                     // Tabella delle lettere della parola segreta
+    public final String translated;
+    public final long start;                                // Istante di pubblicazione (ms)
+    public final long end;                                  // Istante previsto per il cambio parola (ms)
+
+    /**
+     *
+     * @fun                     GameRound
+     * @brief                   Metodo costruttore
+     * @param id                Numero del round
+     * @param secretWord        Parola segreta ("" prima della prima pubblicazione)
+     * @param translated        Traduzione della parola segreta
+     * @param start             Istante di pubblicazione (ms)
+     * @param end               Istante previsto per il cambio parola (ms)
+     *
+     */
+    public GameRound(long id, String secretWord, String translated, long start, long end) {
+        if(secretWord == null) throw new NullPointerException();
+        this.id = id;
+        this.secretWord = secretWord;
+        this.scorer = new FeedbackScorer(secretWord);
+        this.translated = translated;
+        this.start = start;
+        this.end = end;
+    }
+
+}
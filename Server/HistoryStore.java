@@ -0,0 +1,196 @@
+package Server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * @class                   HistoryStore
+ * @brief                   Archivio su disco delle partite concluse degli utenti (modalita' a livelli: in memoria
+ *                          restano solo i contatori e la partita corrente). File append-only condiviso: ogni record
+ *                          contiene una partita e la posizione del record precedente dello stesso utente, per cui
+ *                          all'utente basta ricordare la posizione dell'ultimo record e lo storico viene letto solo
+ *                          quando serve. Il file e' ricostruito ad ogni avvio a partire dallo snapshot
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class HistoryStore {
+
+    /** Variabili globali */
+    public static final long NONE = -1;                     // Nessun record precedente
+
+    /**
+     *
+     * @class               Game
+     * @brief               Partita letta dall'archivio
+     *
+     */
+    public static class Game {
+        public final boolean won;
+        public final String word;
+        public final ArrayList<String> attempts;
+
+        Game(boolean won, String word, ArrayList<String> attempts) {
+            this.won = won;
+            this.word = word;
+            this.attempts = attempts;
+        }
+    }
+
+    /** Attributi */
+    private final RandomAccessFile file;                    // Accesso non interrompibile (a differenza di un FileChannel)
+    private final WordsDictionary words;
+    private long end;                                       // Posizione del prossimo record
+    private final ReentrantLock lock;
+
+    /**
+     *
+     * @fun                     HistoryStore
+     * @brief                   Metodo costruttore: crea (o svuota) il file dell'archivio
+     * @param pathname          File dell'archivio
+     * @param words             Dizionario delle parole di gioco
+     * @throws IOException
+     *
+     */
+    public HistoryStore(String pathname, WordsDictionary words) throws IOException {
+
+        /** Controllo argomenti */
+        if(pathname.equals("")) throw new IllegalArgumentException();
+        if(words == null) throw new NullPointerException();
+
+        File f = new File(pathname);
+        if(f.exists() && !f.isFile()) throw new IOException(pathname);
+        this.file = new RandomAccessFile(f, "rw");
+        this.file.setLength(0);
+        this.words = words;
+        this.end = 0;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     *
+     * @fun                     append
+     * @brief                   Aggiunge una partita conclusa allo storico di un utente
+     * @param prev              Posizione dell'ultimo record dell'utente (NONE se e' il primo)
+     * @param won               true se la partita e' stata vinta
+     * @param word              Parola giocata
+     * @param attempts          Suggerimenti della partita
+     * @return                  Posizione del nuovo record
+     * @throws IOException
+     *
+     */
+    public long append(long prev, boolean won, String word, ArrayList<String> attempts) throws IOException {
+
+        /** Preparo il record: precedente, esito, parola (indice o per esteso), suggerimenti impacchettati */
+        ByteArrayOutputStream b = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(b);
+        out.writeInt(0);
+        out.writeLong(prev);
+        out.writeBoolean(won);
+        int index = this.words.indexOf(word);
+        out.writeInt(index);
+        if(index == -1) out.writeUTF(word);
+        out.writeByte(attempts.size());
+        for (String s : attempts) {
+            int code = FeedbackScorer.encode(s);
+            out.writeInt(code);
+            if(code == -1) out.writeUTF(s);
+        }
+        byte[] r = b.toByteArray();
+        int len = r.length - 4;
+        r[0] = (byte) (len >>> 24);
+        r[1] = (byte) (len >>> 16);
+        r[2] = (byte) (len >>> 8);
+        r[3] = (byte) len;
+
+        this.lock.lock();
+        try {
+            long pos = this.end;
+            this.file.seek(pos);
+            this.file.write(r);
+            this.end += r.length;
+            return pos;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     load
+     * @brief                   Legge lo storico di un utente seguendo la catena dei record
+     * @param tail              Posizione dell'ultimo record dell'utente
+     * @return                  Partite in ordine cronologico
+     * @throws IOException
+     *
+     */
+    public ArrayList<Game> load(long tail) throws IOException {
+        ArrayList<Game> l = new ArrayList<>();
+        long pos = tail;
+        while (pos != NONE) {
+            byte[] r;
+            this.lock.lock();
+            try {
+                this.file.seek(pos);
+                r = new byte[this.file.readInt()];
+                this.file.readFully(r);
+            } finally {
+                this.lock.unlock();
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(r));
+            pos = in.readLong();
+            boolean won = in.readBoolean();
+            int index = in.readInt();
+            String word = (index == -1) ? in.readUTF() : this.words.get(index);
+            int n = in.readUnsignedByte();
+            ArrayList<String> attempts = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int code = in.readInt();
+                attempts.add((code == -1) ? in.readUTF() : FeedbackScorer.decode(code));
+            }
+            l.add(new Game(won, word, attempts));
+        }
+        Collections.reverse(l);
+        return l;
+    }
+
+    /**
+     *
+     * @fun                     size
+     * @brief                   Dimensione in byte dell'archivio
+     * @return                  Byte scritti
+     *
+     */
+    public long size() {
+        this.lock.lock();
+        try {
+            return this.end;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Chiude l'archivio
+     *
+     */
+    public void close() {
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
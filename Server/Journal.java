@@ -0,0 +1,350 @@
+package Server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * @class                   Journal
+ * @brief                   Log append-only delle modifiche allo stato degli utenti (registrazione, inizio partita,
+ *                          tentativo, vittoria, nuova parola). Ogni record e' scritto in forma compatta
+ *                          (dimensione, CRC32, tipo, utente, argomento); al riavvio i record vengono riapplicati
+ *                          sopra l'ultimo snapshot JSON. Il file inizia con il numero di generazione del journal:
+ *                          lo snapshot memorizza l'ultima generazione che contiene, cosi' un arresto tra la scrittura
+ *                          dello snapshot e lo svuotamento del journal non fa riapplicare due volte gli stessi record.
+ *                          La politica di sincronizzazione su disco e' configurabile: always
+ *                          (commit di gruppo: un'unica fsync copre tutti i record in attesa), interval
+ *                          (fsync periodica) o none (scrittura demandata al sistema operativo)
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class Journal implements Runnable {
+
+    /** Tipi di record */
+    public static final byte REGISTER = 1;
+    public static final byte PLAY = 2;
+    public static final byte ATTEMPT = 3;
+    public static final byte WIN = 4;
+    public static final byte ROUND = 5;
+
+    /** Politiche di sincronizzazione */
+    public static final String SYNC_ALWAYS = "always";
+    public static final String SYNC_INTERVAL = "interval";
+    public static final String SYNC_NONE = "none";
+
+    /**
+     *
+     * @interface           Replayer
+     * @brief               Applica allo stato in memoria un record letto dal journal
+     *
+     */
+    public interface Replayer {
+        public void apply(byte type, String username, String arg) throws Exception;
+    }
+
+    /** Attributi */
+    private final String pathname;
+    private final String syncPolicy;
+    private final long syncInterval;
+    private FileOutputStream out;                       // Stream in append (non chiuso da un interrupt come un FileChannel)
+    private ByteArrayOutputStream pending;              // Record accodati e non ancora scritti sul file
+    private DataOutputStream pendingOut;
+    private long appended;                              // Numero di sequenza dell'ultimo record accodato
+    private long durable;                               // Numero di sequenza dell'ultimo record scritto (e sincronizzato)
+    private long generation;                            // Generazione del journal (incrementata ad ogni svuotamento)
+    private final ReentrantLock appendLock;             // Protegge i record accodati
+    private final ReentrantLock syncLock;               // Serializza le scritture sul file
+    private Logger log;
+
+    /**
+     *
+     * @fun                             Journal
+     * @brief                           Metodo costruttore
+     * @param pathname                  File del journal
+     * @param syncPolicy                Politica di sincronizzazione (always, interval, none)
+     * @param syncInterval              Intervallo in millisecondi tra due sincronizzazioni (politiche interval e none)
+     * @param log                       File di log
+     * @throws IOException
+     *
+     */
+    public Journal(String pathname, String syncPolicy, long syncInterval, Logger log) throws IOException {
+
+        /** Controllo argomenti */
+        if(pathname.equals("")) throw new IllegalArgumentException();
+        if(!syncPolicy.equals(SYNC_ALWAYS) && !syncPolicy.equals(SYNC_INTERVAL) && !syncPolicy.equals(SYNC_NONE)) throw new IllegalArgumentException(syncPolicy);
+
+        this.pathname = pathname;
+        this.syncPolicy = syncPolicy;
+        this.syncInterval = syncInterval;
+        this.pending = new ByteArrayOutputStream();
+        this.pendingOut = new DataOutputStream(this.pending);
+        this.appended = 0;
+        this.durable = 0;
+        this.appendLock = new ReentrantLock();
+        this.syncLock = new ReentrantLock();
+        this.log = log;
+        this.out = new FileOutputStream(pathname, true);
+
+        /** Leggo la generazione dall'intestazione, creandola se il file e' nuovo */
+        File f = new File(pathname);
+        if(f.length() < 8) {
+            this.out.getChannel().truncate(0);
+            writeHeader(1);
+        } else {
+            try (DataInputStream dis = new DataInputStream(new FileInputStream(f))) {
+                this.generation = dis.readLong();
+            }
+        }
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 writeHeader
+     * @brief               Scrive l'intestazione di un journal vuoto
+     * @param generation    Generazione del journal
+     * @throws IOException
+     *
+     */
+    private void writeHeader(long generation) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(8);
+        new DataOutputStream(b).writeLong(generation);
+        this.out.write(b.toByteArray());
+        this.out.getFD().sync();
+        this.generation = generation;
+    }
+
+    /**
+     *
+     * @fun                 flush
+     * @brief               Scrive sul file i record accodati ed eventualmente forza la sincronizzazione su disco
+     * @param force         true per eseguire la fsync
+     * @throws IOException
+     *
+     */
+    private void flush(boolean force) throws IOException {
+        this.syncLock.lock();
+        try {
+            byte[] b;
+            long seq;
+            this.appendLock.lock();
+            try {
+                if(this.pending.size() == 0) return;
+                b = this.pending.toByteArray();
+                seq = this.appended;
+                this.pending.reset();
+            } finally {
+                this.appendLock.unlock();
+            }
+            this.out.write(b);
+            if(force) this.out.getFD().sync();
+            this.durable = seq;
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     append
+     * @brief                   Accoda un record al journal
+     * @param type              Tipo di record
+     * @param username          Utente a cui si riferisce il record
+     * @param arg               Argomento del record ("" se assente)
+     * @return                  Numero di sequenza del record, da passare a commit
+     * @throws IOException
+     *
+     */
+    public long append(byte type, String username, String arg) throws IOException {
+
+        /** Preparo il contenuto del record */
+        ByteArrayOutputStream body = new ByteArrayOutputStream(32);
+        DataOutputStream dos = new DataOutputStream(body);
+        dos.writeByte(type);
+        dos.writeUTF(username);
+        dos.writeUTF(arg);
+        byte[] b = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(b);
+
+        this.appendLock.lock();
+        try {
+            this.pendingOut.writeInt(b.length);
+            this.pendingOut.writeInt((int) crc.getValue());
+            this.pendingOut.write(b);
+            return ++this.appended;
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     commit
+     * @brief                   Con politica always attende che il record sia su disco; chi trova record in attesa
+     *                          li sincronizza tutti insieme (commit di gruppo). Con le altre politiche non attende
+     * @param seq               Numero di sequenza restituito da append
+     * @throws IOException
+     *
+     */
+    public void commit(long seq) throws IOException {
+        if(!this.syncPolicy.equals(SYNC_ALWAYS)) return;
+        this.syncLock.lock();
+        try {
+            if(this.durable >= seq) return;
+            flush(true);
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     replay
+     * @brief                   Rilegge il journal applicando ogni record integro; un record finale incompleto o
+     *                          corrotto (scrittura interrotta) termina la lettura
+     * @param r                 Oggetto che applica i record
+     * @param snapshotGen       Ultima generazione gia' inclusa nello snapshot
+     * @return                  Numero di record applicati
+     * @throws IOException
+     *
+     */
+    public long replay(Replayer r, long snapshotGen) throws IOException {
+        long count = 0;
+        File f = new File(this.pathname);
+        if(!f.exists()) return 0;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+
+            /** Journal gia' contenuto nello snapshot */
+            if(dis.readLong() <= snapshotGen) return 0;
+            while (true) {
+                int dim, crcValue;
+                byte[] b;
+                try {
+                    dim = dis.readInt();
+                    crcValue = dis.readInt();
+                    if(dim < 0 || dim > 3*65535 + 1) break;
+                    b = dis.readNBytes(dim);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(b);
+                if(b.length != dim || (int) crc.getValue() != crcValue) {
+                    this.log.warning(Thread.currentThread().getName() + " Journal: record incompleto o corrotto dopo " + count + " record - Fine lettura\n");
+                    break;
+                }
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(b));
+                byte type = rec.readByte();
+                String username = rec.readUTF();
+                String arg = rec.readUTF();
+                try {
+                    r.apply(type, username, arg);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @fun                     truncate
+     * @brief                   Svuota il journal dopo che il suo contenuto e' stato incluso in uno snapshot,
+     *                          passando alla generazione successiva
+     * @throws IOException
+     *
+     */
+    public void truncate() throws IOException {
+        this.syncLock.lock();
+        try {
+            this.appendLock.lock();
+            try {
+                this.pending.reset();
+                this.durable = this.appended;
+            } finally {
+                this.appendLock.unlock();
+            }
+            this.out.getChannel().truncate(0);
+            writeHeader(this.generation + 1);
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     generation
+     * @brief                   Generazione corrente del journal
+     * @return                  Generazione del journal
+     *
+     */
+    public long generation() {
+        return this.generation;
+    }
+
+    /**
+     *
+     * @fun                     size
+     * @brief                   Dimensione in byte del journal su disco
+     * @return                  Byte scritti sul file
+     * @throws IOException
+     *
+     */
+    public long size() throws IOException {
+        return new File(this.pathname).length();
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Scrive i record in attesa e chiude il journal
+     *
+     */
+    public void close() {
+        try {
+            flush(!this.syncPolicy.equals(SYNC_NONE));
+            this.out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     *
+     * @fun                     run
+     * @brief                   Sincronizzazione periodica dei record accodati (politiche interval e none)
+     *
+     */
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(this.syncInterval);
+                flush(this.syncPolicy.equals(SYNC_INTERVAL));
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * @class                   Leaderboard
+ * @brief                   Classifica di gioco indicizzata: albero (treap) con statistiche d'ordine, ordinato per
+ *                          punteggio aws e username. Riposizionare un utente, leggere i primi K e calcolare la
+ *                          posizione di un utente costano O(log n). I nodi contengono solo username e punteggio,
+ *                          per cui la classifica non trattiene in memoria gli oggetti Utente. La classe non e'
+ *                          thread-safe: l'accesso e' serializzato dal chiamante
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class Leaderboard {
+
+    /**
+     *
+     * @class               Node
+     * @brief               Nodo del treap: chiave (punteggio, username), priorita' casuale e dimensione del sottoalbero
+     *
+     */
+    private static class Node {
+        double score;
+        String username;
+        int priority;
+        int size;
+        Node left;
+        Node right;
+
+        Node(double score, String username, int priority) {
+            this.score = score;
+            this.username = username;
+            this.priority = priority;
+            this.size = 1;
+        }
+    }
+
+    /** Attributi */
+    private Node root;
+    private HashMap<String, Double> scores;             // Punteggio con cui ogni utente e' memorizzato nell'albero
+    private Random random;
+
+    /**
+     *
+     * @fun                 Leaderboard
+     * @brief               Metodo costruttore
+     *
+     */
+    public Leaderboard() {
+        this.root = null;
+        this.scores = new HashMap<>();
+        this.random = new Random();
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    private static int size(Node n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    private static void resize(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+
+    /**
+     *
+     * @fun                 compare
+     * @brief               Ordine della classifica: punteggio aws crescente (NaN in fondo), a parita' username
+     *
+     */
+    private static int compare(double score, String username, Node n) {
+        int c = Double.compare(score, n.score);
+        return (c != 0) ? c : username.compareTo(n.username);
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        resize(n);
+        resize(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        resize(n);
+        resize(r);
+        return r;
+    }
+
+    private Node insert(Node n, Node x) {
+        if(n == null) return x;
+        if(compare(x.score, x.username, n) < 0) {
+            n.left = insert(n.left, x);
+            if(n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, x);
+            if(n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        resize(n);
+        return n;
+    }
+
+    private Node remove(Node n, double score, String username) {
+        if(n == null) return null;
+        int c = compare(score, username, n);
+        if(c < 0) n.left = remove(n.left, score, username);
+        else if(c > 0) n.right = remove(n.right, score, username);
+        else {
+            if(n.left == null) return n.right;
+            if(n.right == null) return n.left;
+            if(n.left.priority > n.right.priority) {
+                n = rotateRight(n);
+                n.right = remove(n.right, score, username);
+            } else {
+                n = rotateLeft(n);
+                n.left = remove(n.left, score, username);
+            }
+        }
+        resize(n);
+        return n;
+    }
+
+    private void collect(Node n, int k, List<String> out) {
+        if(n == null || out.size() >= k) return;
+        collect(n.left, k, out);
+        if(out.size() < k) out.add(n.username);
+        collect(n.right, k, out);
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                 update
+     * @brief               Inserisce l'utente o lo riposiziona in base al suo punteggio attuale
+     * @param u             Utente il cui punteggio e' cambiato
+     *
+     */
+    public void update(Utente u) {
+        if(u == null) throw new NullPointerException();
+        Double old = this.scores.get(u.getUsername());
+        if(old != null) this.root = remove(this.root, old, u.getUsername());
+        double score = u.awsUtente();
+        this.root = insert(this.root, new Node(score, u.getUsername(), this.random.nextInt()));
+        this.scores.put(u.getUsername(), score);
+    }
+
+    /**
+     *
+     * @fun                 top
+     * @brief               Restituisce i primi k utenti della classifica
+     * @param k             Numero di posizioni richieste
+     * @return              Username (al piu' k elementi) ordinati dal primo classificato
+     *
+     */
+    public List<String> top(int k) {
+        List<String> l = new ArrayList<>(Math.min(k, size(this.root)));
+        collect(this.root, k, l);
+        return l;
+    }
+
+    /**
+     *
+     * @fun                 score
+     * @brief               Restituisce il punteggio con cui l'utente e' indicizzato in classifica
+     * @param username      Username utente
+     * @return              Punteggio aws, null se l'utente non e' in classifica
+     *
+     */
+    public Double score(String username) {
+        return this.scores.get(username);
+    }
+
+    /**
+     *
+     * @fun                 rankOf
+     * @brief               Calcola la posizione in classifica di un utente
+     * @param username      Username utente
+     * @return              Posizione (a partire da 1), -1 se l'utente non e' in classifica
+     *
+     */
+    public int rankOf(String username) {
+        Double score = this.scores.get(username);
+        if(score == null) return -1;
+        int rank = 0;
+        Node n = this.root;
+        while (n != null) {
+            int c = compare(score, username, n);
+            if(c < 0) n = n.left;
+            else {
+                rank += size(n.left) + 1;
+                if(c == 0) return rank;
+                n = n.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @fun                 size
+     * @brief               Numero di utenti in classifica
+     * @return              Dimensione della classifica
+     *
+     */
+    public int size() {
+        return size(this.root);
+    }
+
+}
@@ -0,0 +1,335 @@
+package Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import Interfaces.ServerNotify;
+
+/**
+ *
+ * @class                   NotificationDispatcher
+ * @brief                   Invio asincrono degli aggiornamenti di classifica ai client registrati via RMI. Ogni client
+ *                          ha una coda di un solo elemento che conserva soltanto l'ultimo podio non ancora consegnato,
+ *                          e i suoi invii sono eseguiti da un pool dedicato uno alla volta. Ogni chiamata ha un tempo
+ *                          massimo, applicato anche dal runtime RMI alla connessione e alla lettura della risposta,
+ *                          e un client che fallisce troppe volte di seguito viene rimosso, per cui la latenza
+ *                          delle richieste di gioco non dipende dallo stato dei client. Le chiamate in corso sono
+ *                          limitate. Un podio non consegnato (pool delle chiamate pieno, chiamata scaduta o fallita)
+ *                          resta in attesa e l'invio viene ritentato dopo timeoutMs, finche' non arriva o il client
+ *                          viene rimosso: il podio e' pubblicato solo quando cambia, quindi non c'e' un invio
+ *                          successivo su cui contare. Un client appena registrato riceve subito l'ultimo podio pubblicato
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class NotificationDispatcher {
+
+    /** Variabili globali */
+    public static final int threadsDefault = 4;
+    public static final long timeoutMsDefault = 2000;
+    public static final int maxFailuresDefault = 3;
+
+    /**
+     *
+     * @class               Subscriber
+     * @brief               Client registrato: riferimento RMI, ultimo podio da consegnare e stato degli invii
+     *
+     */
+    private static class Subscriber {
+        final String username;
+        final ServerNotify sn;
+        final AtomicReference<LinkedList<String>> pending;
+        final AtomicBoolean scheduled;                      // true se un invio e' in coda, in corso o in attesa di essere ritentato
+        int failures;                                       // Fallimenti consecutivi (solo dal thread che consegna)
+
+        Subscriber(String username, ServerNotify sn) {
+            this.username = username;
+            this.sn = sn;
+            this.pending = new AtomicReference<>();
+            this.scheduled = new AtomicBoolean(false);
+            this.failures = 0;
+        }
+    }
+
+    /**
+     *
+     * @class               TimeoutSocketFactory
+     * @brief               Socket RMI con tempo massimo di connessione (le chiamate ai client partono dal server)
+     *
+     */
+    private static class TimeoutSocketFactory extends RMISocketFactory {
+        final int timeoutMs;
+
+        TimeoutSocketFactory(int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            Socket s = new Socket();
+            try {
+                s.connect(new InetSocketAddress(host, port), this.timeoutMs);
+            } catch (IOException e) {
+                s.close();
+                throw e;
+            }
+            return s;
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return new ServerSocket(port);
+        }
+    }
+
+    /** Attributi */
+    private final ConcurrentHashMap<String, Subscriber> subscribers;
+    private volatile LinkedList<String> last;               // Ultimo podio pubblicato, inviato ai nuovi client
+    private final ScheduledExecutorService workers;         // Consegne, al piu' una per client alla volta
+    private final ExecutorService callers;                  // Chiamate RMI (al piu' threads*maxFailures), abbandonate allo scadere del tempo
+    private final long timeoutMs;
+    private final int maxFailures;
+    private final LongAdder delivered;
+    private final LongAdder coalesced;
+    private final LongAdder failed;
+    private final LongAdder evicted;
+    private final LongAdder rejected;
+    private final LongAdder retried;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     NotificationDispatcher
+     * @brief                   Metodo costruttore. Imposta i tempi massimi delle chiamate RMI in uscita dal server
+     *                          (da creare prima di qualunque uso di RMI, i valori sono letti una sola volta)
+     * @param threads           Thread del pool di consegna
+     * @param timeoutMs         Tempo massimo di una chiamata al client
+     * @param maxFailures       Fallimenti consecutivi dopo i quali il client viene rimosso
+     * @param log               File di log
+     *
+     */
+    public NotificationDispatcher(int threads, long timeoutMs, int maxFailures, Logger log) {
+
+        /** Controllo argomenti */
+        if(threads <= 0 || timeoutMs <= 0 || maxFailures <= 0) throw new IllegalArgumentException();
+
+        this.subscribers = new ConcurrentHashMap<>();
+        this.workers = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Notifier");
+            t.setDaemon(true);
+            return t;
+        });
+        this.callers = new ThreadPoolExecutor(0, threads*maxFailures, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "NotifierCall");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timeoutMs = timeoutMs;
+        this.maxFailures = maxFailures;
+        this.delivered = new LongAdder();
+        this.coalesced = new LongAdder();
+        this.failed = new LongAdder();
+        this.evicted = new LongAdder();
+        this.rejected = new LongAdder();
+        this.retried = new LongAdder();
+        this.log = log;
+
+        /** Tempo massimo anche sulla chiamata: una risposta che non arriva chiude la connessione e libera il thread */
+        int t = (int) Math.min(timeoutMs, Integer.MAX_VALUE);
+        if(System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) System.setProperty("sun.rmi.transport.tcp.responseTimeout", Integer.toString(t));
+        if(System.getProperty("sun.rmi.transport.tcp.handshakeTimeout") == null) System.setProperty("sun.rmi.transport.tcp.handshakeTimeout", Integer.toString(t));
+        if(RMISocketFactory.getSocketFactory() == null) {
+            try {
+                RMISocketFactory.setSocketFactory(new TimeoutSocketFactory(t));
+            } catch (IOException e) {
+                this.log.warning(Thread.currentThread().getName() + " Tempo massimo di connessione RMI non impostato: " + e + "\n");
+            }
+        }
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 schedule
+     * @brief               Mette in coda la consegna per il client se non ce n'e' gia' una
+     *
+     */
+    private void schedule(Subscriber s) {
+        if(s.scheduled.compareAndSet(false, true)) this.workers.execute(() -> drain(s));
+    }
+
+    /**
+     *
+     * @fun                 retry
+     * @brief               Ritenta la consegna al client dopo timeoutMs; il flag scheduled resta impostato, quindi i
+     *                      publish nel frattempo sostituiscono solo il podio in attesa
+     *
+     */
+    private void retry(Subscriber s) {
+        this.retried.increment();
+        try {
+            this.workers.schedule(() -> drain(s), this.timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            s.scheduled.set(false);                         // Dispatcher chiuso
+        }
+    }
+
+    /**
+     *
+     * @fun                 drain
+     * @brief               Consegna al client l'ultimo podio in attesa, finche' ce n'e' uno. Un podio non consegnato
+     *                      torna in attesa (se nel frattempo non ne e' arrivato uno piu' recente) e la consegna viene
+     *                      ritentata, a meno che il client non sia stato rimosso
+     *
+     */
+    private void drain(Subscriber s) {
+        LinkedList<String> l;
+        while ((l = s.pending.getAndSet(null)) != null) {
+            if(this.subscribers.get(s.username) != s) return;
+            if(!deliver(s, l)) {
+                if(this.subscribers.get(s.username) != s) return;
+                s.pending.compareAndSet(null, l);
+                retry(s);
+                return;
+            }
+        }
+        s.scheduled.set(false);
+
+        /** Un podio arrivato dopo l'ultimo controllo ma prima del reset del flag */
+        if(s.pending.get() != null) schedule(s);
+    }
+
+    /**
+     *
+     * @fun                 deliver
+     * @brief               Chiamata RMI con tempo massimo; dopo troppi fallimenti consecutivi il client viene rimosso
+     * @return              false se il podio non e' stato consegnato (pool delle chiamate pieno, chiamata scaduta o fallita)
+     *
+     */
+    private boolean deliver(Subscriber s, LinkedList<String> l) {
+        Future<?> f;
+        try {
+            f = this.callers.submit(() -> {
+                s.sn.ServerAlert(l);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            this.rejected.increment();
+            this.log.warning(Thread.currentThread().getName() + " Notifica a " + s.username + " rinviata: troppe chiamate in corso\n");
+            return false;
+        }
+        try {
+            f.get(this.timeoutMs, TimeUnit.MILLISECONDS);
+            s.failures = 0;
+            this.delivered.increment();
+            return true;
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            this.log.warning(Thread.currentThread().getName() + " Notifica a " + s.username + " scaduta dopo " + this.timeoutMs + " ms\n");
+        } catch (ExecutionException e) {
+            this.log.warning(Thread.currentThread().getName() + " Notifica a " + s.username + " non riuscita: " + e.getCause() + "\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+        this.failed.increment();
+        if(++s.failures >= this.maxFailures && this.subscribers.remove(s.username, s)) {
+            this.evicted.increment();
+            this.log.warning(Thread.currentThread().getName() + " Client di " + s.username + " rimosso dalle notifiche dopo " + s.failures + " errori\n");
+        }
+        return false;
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     subscribe
+     * @brief                   Registra (o sostituisce) il client da notificare per un utente e gli accoda l'ultimo
+     *                          podio pubblicato: il podio viene inviato solo quando cambia
+     * @param username          Username utente
+     * @param sn                Riferimento RMI del client
+     *
+     */
+    public void subscribe(String username, ServerNotify sn) {
+        if(sn == null) throw new NullPointerException();
+        Subscriber s = new Subscriber(username, sn);
+        this.subscribers.put(username, s);
+        LinkedList<String> l = this.last;
+        if(l != null && s.pending.compareAndSet(null, l)) schedule(s);
+    }
+
+    /**
+     *
+     * @fun                     unsubscribe
+     * @brief                   Cancella il client da notificare per un utente
+     * @param username          Username utente
+     *
+     */
+    public void unsubscribe(String username) {
+        this.subscribers.remove(username);
+    }
+
+    /**
+     *
+     * @fun                     publish
+     * @brief                   Accoda un nuovo podio per tutti i client registrati, sostituendo quello non ancora
+     *                          consegnato; non blocca il chiamante
+     * @param podium            Podio da inviare (non va modificato dopo la chiamata)
+     *
+     */
+    public void publish(LinkedList<String> podium) {
+        this.last = podium;
+        for (Map.Entry<String, Subscriber> e : this.subscribers.entrySet()) {
+            Subscriber s = e.getValue();
+            if(s.pending.getAndSet(podium) != null) this.coalesced.increment();
+            schedule(s);
+        }
+    }
+
+    /**
+     *
+     * @fun                     size
+     * @brief                   Numero di client registrati
+     *
+     */
+    public int size() {
+        return this.subscribers.size();
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Ferma i pool di consegna e riporta nel log i contatori
+     *
+     */
+    public void close() {
+        this.workers.shutdownNow();
+        this.callers.shutdownNow();
+        this.log.info(Thread.currentThread().getName() + " Notifiche: consegnate " + this.delivered.sum() + " - sostituite " + this.coalesced.sum()
+                + " - fallite " + this.failed.sum() + " - rinviate " + this.rejected.sum() + " - ritentate " + this.retried.sum()
+                + " - client rimossi " + this.evicted.sum() + "\n");
+    }
+
+}
@@ -0,0 +1,460 @@
+package Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @class                   OffHeapUserStore
+ * @brief                   Archivio degli utenti fuori dallo heap, su file mappati in memoria: ogni utente occupa uno
+ *                          slot di dimensione fissa (hash e nome utente, verificatore della password, contatori,
+ *                          distribuzione dei tentativi e partita corrente) e un indice hash su disco associa il nome
+ *                          utente allo slot. Le pagine sono gestite dal sistema operativo e all'avvio non c'e' nulla
+ *                          da interpretare: in memoria vengono ricostruiti solo gli utenti che effettuano il login
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class OffHeapUserStore {
+
+    /** Variabili globali */
+    public static final int SLOT = 256;                     // Byte per utente
+    public static final int STATS = SLOT - Utente.SLOT_STATS_BYTES; // Inizio della parte scritta da Utente.writeSlot
+    public static final int MAX_USERNAME = 70;              // Byte UTF-8 massimi del nome utente
+    private static final int MAGIC = 0x57524455;            // "WRDU"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_SLOTS = 1 << 16;       // Slot per segmento mappato (16 MB)
+    private static final int INDEX_HEADER = 16;
+
+    /** Layout dello slot */
+    private static final int HASH = 0;
+    private static final int NAME_LEN = 8;
+    private static final int NAME = 10;
+    private static final int SALT = 80;
+    private static final int VERIFIER = 96;
+
+    /** Layout dell'intestazione (slot 0) */
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOT = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_WORDS = 16;
+    private static final int H_CLEAN = 20;
+
+    /** Attributi */
+    private final String pathname;
+    private final RandomAccessFile slotsFile;
+    private final ArrayList<MappedByteBuffer> segments;     // Segmenti mappati del file degli slot
+    private MappedByteBuffer index;                         // Indice: slot (1..count) per posizione, 0 se libero
+    private int indexCapacity;
+    private int count;
+    private final ReentrantReadWriteLock lock;              // Lettura: accesso agli slot - Scrittura: registrazioni
+    private final SecureRandom random;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     OffHeapUserStore
+     * @brief                   Metodo costruttore: apre l'archivio (creandolo se assente). Se il server non era stato
+     *                          fermato correttamente l'indice viene ricostruito dagli slot
+     * @param pathname          File degli slot (l'indice e' in pathname.index)
+     * @param log               File di log
+     * @throws IOException
+     *
+     */
+    public OffHeapUserStore(String pathname, Logger log) throws IOException {
+
+        /** Controllo argomenti */
+        if(pathname.equals("")) throw new IllegalArgumentException();
+
+        this.pathname = pathname;
+        this.log = log;
+        this.lock = new ReentrantReadWriteLock();
+        this.random = new SecureRandom();
+        this.segments = new ArrayList<>();
+        this.slotsFile = new RandomAccessFile(pathname, "rw");
+        mapSegment();
+
+        MappedByteBuffer h = this.segments.get(0);
+        if(h.getInt(H_MAGIC) == 0) {
+            h.putInt(H_MAGIC, MAGIC);
+            h.putInt(H_VERSION, VERSION);
+            h.putInt(H_SLOT, SLOT);
+            h.putInt(H_COUNT, 0);
+            h.putInt(H_WORDS, 0);
+            h.put(H_CLEAN, (byte) 1);
+        }
+        if(h.getInt(H_MAGIC) != MAGIC || h.getInt(H_VERSION) != VERSION || h.getInt(H_SLOT) != SLOT) throw new IOException(pathname + ": archivio utenti non valido");
+        this.count = h.getInt(H_COUNT);
+        while ((long) this.segments.size()*SEGMENT_SLOTS <= this.count) mapSegment();
+
+        /** Indice: riuso quello su disco solo dopo un arresto regolare */
+        boolean clean = h.get(H_CLEAN) == 1;
+        File indexFile = new File(pathname + ".index");
+        if(clean && indexFile.isFile() && indexFile.length() > INDEX_HEADER) {
+            this.index = map(indexFile, indexFile.length());
+            this.indexCapacity = this.index.getInt(0);
+            if(this.index.getInt(4) != this.count || (long) INDEX_HEADER + 4L*this.indexCapacity != indexFile.length()) clean = false;
+        } else clean = false;
+        if(!clean) {
+            if(this.count > 0) this.log.warning(Thread.currentThread().getName() + " Archivio utenti: ricostruzione dell'indice (" + this.count + " utenti)\n");
+            rebuildIndex(Math.max(1024, Integer.highestOneBit(Math.max(this.count, 1))*4));
+        }
+        h.put(H_CLEAN, (byte) 0);
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    private static MappedByteBuffer map(File f, long size) throws IOException {
+        try (RandomAccessFile r = new RandomAccessFile(f, "rw")) {
+            return r.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void mapSegment() throws IOException {
+        long start = (long) this.segments.size()*SEGMENT_SLOTS*SLOT;
+        this.segments.add(this.slotsFile.getChannel().map(FileChannel.MapMode.READ_WRITE, start, (long) SEGMENT_SLOTS*SLOT));
+    }
+
+    private MappedByteBuffer segment(int slot) {
+        return this.segments.get(slot / SEGMENT_SLOTS);
+    }
+
+    private static int offset(int slot) {
+        return (slot % SEGMENT_SLOTS)*SLOT;
+    }
+
+    /**
+     *
+     * @fun                 hash
+     * @brief               Hash FNV-1a a 64 bit del nome utente (stabile tra un avvio e l'altro)
+     *
+     */
+    private static long hash(byte[] name) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : name) {
+            h = (h ^ (b & 0xff))*0x100000001b3L;
+        }
+        return h;
+    }
+
+    private int position(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & (this.indexCapacity - 1);
+    }
+
+    private boolean nameEquals(int slot, byte[] name) {
+        MappedByteBuffer s = segment(slot);
+        int o = offset(slot);
+        if(s.getShort(o + NAME_LEN) != name.length) return false;
+        for (int i = 0; i < name.length; i++) {
+            if(s.get(o + NAME + i) != name[i]) return false;
+        }
+        return true;
+    }
+
+    private String nameOf(int slot) {
+        MappedByteBuffer s = segment(slot);
+        int o = offset(slot);
+        byte[] name = new byte[s.getShort(o + NAME_LEN)];
+        s.get(o + NAME, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     *
+     * @fun                 lookup
+     * @brief               Cerca lo slot di un utente nell'indice
+     * @return              Slot dell'utente, -1 se non registrato
+     *
+     */
+    private int lookup(byte[] name) {
+        long h = hash(name);
+        int p = position(h);
+        int e;
+        while ((e = this.index.getInt(INDEX_HEADER + 4*p)) != 0) {
+            if(e <= this.count && segment(e).getLong(offset(e) + HASH) == h && nameEquals(e, name)) return e;
+            p = (p + 1) & (this.indexCapacity - 1);
+        }
+        return -1;
+    }
+
+    private void indexInsert(int slot, long h) {
+        int p = position(h);
+        while (this.index.getInt(INDEX_HEADER + 4*p) != 0) p = (p + 1) & (this.indexCapacity - 1);
+        this.index.putInt(INDEX_HEADER + 4*p, slot);
+    }
+
+    /**
+     *
+     * @fun                 rebuildIndex
+     * @brief               Ricostruisce l'indice dagli slot su un file temporaneo e lo sostituisce con una rename
+     * @param capacity      Numero di posizioni del nuovo indice (potenza di 2)
+     * @throws IOException
+     *
+     */
+    private void rebuildIndex(int capacity) throws IOException {
+        File tmp = new File(this.pathname + ".index.tmp");
+        tmp.delete();
+        this.index = map(tmp, INDEX_HEADER + 4L*capacity);
+        this.indexCapacity = capacity;
+        this.index.putInt(0, capacity);
+        for (int slot = 1; slot <= this.count; slot++) {
+            indexInsert(slot, segment(slot).getLong(offset(slot) + HASH));
+        }
+        this.index.putInt(4, this.count);
+        this.index.force();
+        Files.move(tmp.toPath(), new File(this.pathname + ".index").toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] verifier(byte[] salt, String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            return md.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     register
+     * @brief                   Registra un nuovo utente
+     * @param username          Username utente
+     * @param password          Password utente (viene memorizzato solo il verificatore con sale casuale)
+     * @return                  (0) in caso di successo
+     *                          (1) Utente gia' registrato
+     *                          (-1) Errore (nome utente troppo lungo o scrittura fallita)
+     *
+     */
+    public int register(String username, String password) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        if(name.length > MAX_USERNAME) return -1;
+
+        this.lock.writeLock().lock();
+        try {
+            if(lookup(name) != -1) return 1;
+
+            /** Spazio nell'indice e negli slot */
+            if(2L*(this.count + 1) > this.indexCapacity) rebuildIndex(this.indexCapacity*2);
+            int slot = this.count + 1;
+            if(slot / SEGMENT_SLOTS >= this.segments.size()) mapSegment();
+
+            /** Scrivo lo slot, poi l'indice, infine il contatore (un arresto a meta' lascia lo slot inutilizzato) */
+            MappedByteBuffer s = segment(slot);
+            int o = offset(slot);
+            byte[] salt = new byte[16];
+            this.random.nextBytes(salt);
+            long h = hash(name);
+            s.putLong(o + HASH, h);
+            s.putShort(o + NAME_LEN, (short) name.length);
+            s.put(o + NAME, name);
+            s.put(o + SALT, salt);
+            s.put(o + VERIFIER, verifier(salt, password));
+            new Utente(username, password).writeSlot(s, o + STATS);
+            indexInsert(slot, h);
+            this.count = slot;
+            this.index.putInt(4, slot);
+            this.segments.get(0).putInt(H_COUNT, slot);
+            return 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     find
+     * @brief                   Cerca un utente
+     * @param username          Username utente
+     * @return                  Slot dell'utente, -1 se non registrato
+     *
+     */
+    public int find(String username) {
+        this.lock.readLock().lock();
+        try {
+            return lookup(username.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     checkPassword
+     * @brief                   Verifica la password di un utente
+     * @param slot              Slot dell'utente
+     * @param password          Password da verificare
+     * @return                  true se la password e' corretta, false altrimenti
+     *
+     */
+    public boolean checkPassword(int slot, String password) {
+        byte[] salt = new byte[16], stored = new byte[32];
+        this.lock.readLock().lock();
+        try {
+            segment(slot).get(offset(slot) + SALT, salt);
+            segment(slot).get(offset(slot) + VERIFIER, stored);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return MessageDigest.isEqual(stored, verifier(salt, password));
+    }
+
+    /**
+     *
+     * @fun                     load
+     * @brief                   Ricostruisce in memoria un utente (contatori e partita corrente)
+     * @param slot              Slot dell'utente
+     * @param password          Password gia' verificata, mantenuta in memoria per la sessione
+     * @return                  L'utente
+     *
+     */
+    public Utente load(int slot, String password) {
+        this.lock.readLock().lock();
+        try {
+            return Utente.readSlot(segment(slot), offset(slot) + STATS, nameOf(slot), password);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     save
+     * @brief                   Scrive nello slot i contatori e la partita corrente di un utente (con il lock dell'utente)
+     * @param u                 Utente da salvare
+     * @return                  true in caso di successo, false se l'utente non e' registrato
+     *
+     */
+    public boolean save(Utente u) {
+        this.lock.readLock().lock();
+        try {
+            int slot = lookup(u.getUsername().getBytes(StandardCharsets.UTF_8));
+            if(slot == -1) return false;
+            u.writeSlot(segment(slot), offset(slot) + STATS);
+            return true;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     forEach
+     * @brief                   Visita tutti gli utenti registrati (ricostruiti senza password)
+     * @param c                 Azione da eseguire per ogni utente
+     *
+     */
+    public void forEach(Consumer<Utente> c) {
+        for (int slot = 1; slot <= size(); slot++) {
+            c.accept(load(slot, null));
+        }
+    }
+
+    /**
+     *
+     * @fun                     size
+     * @brief                   Numero di utenti registrati
+     *
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     totalWords
+     * @brief                   Numero totale di parole pubblicate salvato nell'archivio
+     *
+     */
+    public int totalWords() {
+        return this.segments.get(0).getInt(H_WORDS);
+    }
+
+    /**
+     *
+     * @fun                     setTotalWords
+     * @brief                   Aggiorna il numero totale di parole pubblicate e forza su disco le pagine modificate
+     * @param totalWords        Numero totale di parole pubblicate
+     *
+     */
+    public void setTotalWords(int totalWords) {
+        this.lock.readLock().lock();
+        try {
+            this.segments.get(0).putInt(H_WORDS, totalWords);
+            force();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     force
+     * @brief                   Forza su disco le pagine modificate degli slot e dell'indice
+     *
+     */
+    public void force() {
+        for (MappedByteBuffer s : this.segments) {
+            s.force();
+        }
+        this.index.force();
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Segna l'arresto regolare (l'indice su disco sara' riusato) e forza su disco l'archivio
+     *
+     */
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            this.segments.get(0).put(H_CLEAN, (byte) 1);
+            force();
+            this.slotsFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                     memoryBytes
+     * @brief                   Byte mappati (residenti solo se usati, a discrezione del sistema operativo)
+     *
+     */
+    public long memoryBytes() {
+        return (long) this.segments.size()*SEGMENT_SLOTS*SLOT + INDEX_HEADER + 4L*this.indexCapacity;
+    }
+
+}
@@ -0,0 +1,104 @@
+package Server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.LinkedList;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @class                   PodiumMulticaster
+ * @brief                   Pubblica il podio con un solo datagramma sul gruppo multicast della classifica ad ogni
+ *                          cambiamento, invece di una chiamata RMI per ogni client: il costo della notifica non dipende
+ *                          dal numero di utenti collegati. Il datagramma contiene l'istante di avvio del server e un
+ *                          numero di sequenza (il client scarta i datagrammi vecchi o duplicati), poi le righe del podio
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class PodiumMulticaster {
+
+    /** Variabili globali */
+    public static final String groupDefault = "228.5.6.8";
+    public static final int portDefault = 7001;
+
+    /** Attributi */
+    private final DatagramSocket socket;
+    private final InetAddress group;
+    private final int port;
+    private final long instance;                            // Istante di avvio: distingue le sequenze dopo un riavvio
+    private long seq;
+    private long sent;
+    private long errors;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     PodiumMulticaster
+     * @brief                   Metodo costruttore
+     * @param group             Indirizzo del gruppo multicast della classifica
+     * @param port              Porta del gruppo multicast della classifica
+     * @param log               File di log
+     * @throws UnknownHostException
+     * @throws SocketException
+     *
+     */
+    public PodiumMulticaster(String group, int port, Logger log) throws UnknownHostException, SocketException {
+
+        /** Controllo argomenti */
+        this.group = InetAddress.getByName(group);
+        if(!this.group.isMulticastAddress() || port <= 0) throw new IllegalArgumentException();
+
+        this.socket = new DatagramSocket();
+        this.port = port;
+        this.instance = System.currentTimeMillis();
+        this.seq = 0;
+        this.log = log;
+        this.log.config(Thread.currentThread().getName() + " Podio pubblicato sul gruppo multicast " + group + ":" + port + "\n");
+    }
+
+    /**
+     *
+     * @fun                     publish
+     * @brief                   Invia il podio con il numero di sequenza successivo
+     * @param podium            Righe del podio, in ordine
+     *
+     */
+    public synchronized void publish(LinkedList<String> podium) {
+
+        /** Formato: istante di avvio, sequenza, numero di righe, righe (UTF) */
+        this.seq++;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bytes)) {
+            dos.writeLong(this.instance);
+            dos.writeLong(this.seq);
+            dos.writeInt(podium.size());
+            for (String line : podium) dos.writeUTF(line);
+            dos.flush();
+            byte[] b = bytes.toByteArray();
+            this.socket.send(new DatagramPacket(b, b.length, this.group, this.port));
+            this.sent++;
+        } catch (IOException e) {
+            this.errors++;
+            this.log.warning(Thread.currentThread().getName() + " Invio del podio " + this.seq + " non riuscito: " + e + "\n");
+        }
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Chiude il socket e riporta nel log i contatori
+     *
+     */
+    public synchronized void close() {
+        this.socket.close();
+        this.log.info(Thread.currentThread().getName() + " Podi inviati in multicast: " + this.sent + " - errori " + this.errors + "\n");
+    }
+
+}
@@ -0,0 +1,195 @@
+package Server;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @class                   PodiumPublisher
+ * @brief                   Pubblicazione del podio guidata dai cambiamenti: ogni aggiornamento della classifica arriva
+ *                          con un'impronta del podio (nomi e punteggi) e viene scartato se l'impronta e' uguale a
+ *                          quella dell'ultimo podio pubblicato. I cambiamenti ravvicinati sono accorpati: al piu' un
+ *                          invio per intervallo, con l'ultimo podio arrivato. Con il multicast, dove un datagramma
+ *                          perso non viene ritrasmesso, l'ultimo podio e' ripetuto ad ogni intervallo anche se
+ *                          invariato (heartbeat), cosi' un client aggiornato in ritardo lo riceve comunque
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class PodiumPublisher {
+
+    /** Variabili globali */
+    public static final long intervalMsDefault = 250;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Attributi */
+    private final Consumer<LinkedList<String>> sink;        // Invio effettivo (RMI o multicast)
+    private final long intervalNs;
+    private final ScheduledExecutorService timer;
+    private boolean published;                              // true dopo il primo invio
+    private long publishedFp;
+    private long publishedNs;
+    private LinkedList<String> last;                        // Ultimo podio pubblicato, ripetuto dall'heartbeat
+    private LinkedList<String> pending;                     // Podio in attesa della fine dell'intervallo, null se nessuno
+    private long pendingFp;
+    private boolean scheduled;
+    private long sent;
+    private long unchanged;
+    private long coalesced;
+    private long heartbeats;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     PodiumPublisher
+     * @brief                   Metodo costruttore
+     * @param intervalMs        Intervallo minimo tra due invii (ms), 0 per inviare subito ogni cambiamento
+     * @param heartbeat         true per ripetere l'ultimo podio ad ogni intervallo (intervalMsDefault se 0)
+     * @param sink              Invio del podio ai client
+     * @param log               File di log
+     *
+     */
+    public PodiumPublisher(long intervalMs, boolean heartbeat, Consumer<LinkedList<String>> sink, Logger log) {
+
+        /** Controllo argomenti */
+        if(intervalMs < 0) throw new IllegalArgumentException();
+        if(sink == null) throw new NullPointerException();
+
+        this.sink = sink;
+        this.intervalNs = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PodiumPublisher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.published = false;
+        this.log = log;
+        if(heartbeat) {
+            long period = (intervalMs > 0) ? intervalMs : intervalMsDefault;
+            this.timer.scheduleAtFixedRate(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 flush
+     * @brief               Invia il podio in attesa, se diverso dall'ultimo pubblicato
+     *
+     */
+    private void flush() {
+        if(this.pending == null) return;
+        LinkedList<String> l = this.pending;
+        this.pending = null;
+
+        /** Nell'intervallo la classifica e' tornata al podio gia' pubblicato */
+        if(this.published && this.pendingFp == this.publishedFp) {
+            this.unchanged++;
+            return;
+        }
+        this.sink.accept(l);
+        this.sent++;
+        this.published = true;
+        this.publishedFp = this.pendingFp;
+        this.publishedNs = System.nanoTime();
+        this.last = l;
+    }
+
+    /**
+     *
+     * @fun                 flushScheduled
+     * @brief               Fine dell'intervallo: invia l'ultimo podio arrivato
+     *
+     */
+    private synchronized void flushScheduled() {
+        this.scheduled = false;
+        flush();
+    }
+
+    /**
+     *
+     * @fun                 heartbeat
+     * @brief               Ripete l'ultimo podio pubblicato se nell'ultimo intervallo non ne e' partito uno
+     *
+     */
+    private synchronized void heartbeat() {
+        if(!this.published || this.pending != null) return;
+        if(System.nanoTime() - this.publishedNs < this.intervalNs) return;
+        this.sink.accept(this.last);
+        this.heartbeats++;
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     fingerprint
+     * @brief                   Impronta a 64 bit (FNV-1a) di un podio
+     * @param names             Username in ordine di classifica
+     * @param scores            Punteggi corrispondenti
+     * @return                  Impronta del podio
+     *
+     */
+    public static long fingerprint(List<String> names, double[] scores) {
+        long h = FNV_OFFSET;
+        int i = 0;
+        for (String name : names) {
+            for (int j = 0; j < name.length(); j++) h = (h ^ name.charAt(j))*FNV_PRIME;
+            h = (h ^ 0xffff)*FNV_PRIME;                     // Separatore tra i nomi
+            h = (h ^ Double.doubleToLongBits(scores[i++]))*FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     *
+     * @fun                     offer
+     * @brief                   Nuovo stato della classifica: il podio viene costruito e inviato solo se cambiato,
+     *                          subito se l'ultimo invio e' piu' vecchio dell'intervallo, altrimenti alla sua fine
+     * @param fingerprint       Impronta del podio
+     * @param podium            Costruzione delle righe del podio (chiamata solo se il podio e' cambiato)
+     *
+     */
+    public synchronized void offer(long fingerprint, Supplier<LinkedList<String>> podium) {
+
+        /** Uguale all'ultimo podio pubblicato o in attesa */
+        if((this.pending != null) ? fingerprint == this.pendingFp : (this.published && fingerprint == this.publishedFp)) {
+            this.unchanged++;
+            return;
+        }
+        if(this.pending != null) this.coalesced++;
+        this.pending = podium.get();
+        this.pendingFp = fingerprint;
+        if(this.scheduled) return;
+
+        /** Invio subito o alla fine dell'intervallo dall'ultimo invio */
+        long delay = this.published ? this.publishedNs + this.intervalNs - System.nanoTime() : 0;
+        if(delay <= 0) flush();
+        else {
+            this.scheduled = true;
+            this.timer.schedule(this::flushScheduled, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Invia l'eventuale podio in attesa, ferma il timer e riporta nel log i contatori
+     *
+     */
+    public synchronized void close() {
+        this.timer.shutdownNow();
+        flush();
+        this.log.info(Thread.currentThread().getName() + " Podio: inviati " + this.sent + " - invariati " + this.unchanged
+                + " - accorpati " + this.coalesced + " - ripetuti " + this.heartbeats + "\n");
+    }
+
+}
@@ -0,0 +1,105 @@
+package Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ *
+ * @class                   SnapshotCodec
+ * @brief                   Lettura e scrittura in streaming dello snapshot json degli utenti. Gli utenti sono scritti
+ *                          uno alla volta sullo stream e riletti uno alla volta nella mappa del database, senza
+ *                          costruire in memoria l'intero documento; il formato e' quello della serializzazione
+ *                          Jackson di UsersDatabase ({"database": {...}, "totalWords": N, "journalGeneration": G})
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class SnapshotCodec {
+
+    /** Variabili globali */
+    private static final JsonFactory factory = new JsonFactory();
+
+    /**
+     *
+     * @fun                     write
+     * @brief                   Scrive lo snapshot sullo stream (lo stream non viene chiuso)
+     * @param out               Stream di destinazione (bufferizzato dal chiamante)
+     * @param users             Utenti da salvare
+     * @param totalWords        Numero totale di parole pubblicate
+     * @param journalGeneration Ultima generazione del journal inclusa nello snapshot
+     * @throws IOException
+     *
+     */
+    public static void write(OutputStream out, Collection<Utente> users, int totalWords, long journalGeneration) throws IOException {
+        try (JsonGenerator g = factory.createGenerator(out)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            g.useDefaultPrettyPrinter();
+            g.writeStartObject();
+            g.writeObjectFieldStart("database");
+            for (Utente u : users) {
+                g.writeFieldName(u.getUsername());
+                u.writeJson(g);
+            }
+            g.writeEndObject();
+            g.writeNumberField("totalWords", totalWords);
+            g.writeNumberField("journalGeneration", journalGeneration);
+            g.writeEndObject();
+        }
+    }
+
+    /**
+     *
+     * @fun                     read
+     * @brief                   Legge lo snapshot dallo stream inserendo gli utenti nel database man mano che vengono letti
+     * @param in                Stream di origine
+     * @return                  Database ripristinato
+     * @throws IOException
+     *
+     */
+    public static UsersDatabase read(InputStream in) throws IOException {
+        ConcurrentHashMap<String, Utente> database = new ConcurrentHashMap<>();
+        int totalWords = 0;
+        long journalGeneration = 0;
+
+        try (JsonParser p = factory.createParser(in)) {
+            if(p.nextToken() != JsonToken.START_OBJECT) throw new JsonParseException(p, "Snapshot: atteso un oggetto");
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "database":
+                        if(t == JsonToken.VALUE_NULL) break;
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String username = p.currentName();
+                            p.nextToken();
+                            database.put(username, Utente.readJson(p));
+                        }
+                    break;
+
+                    case "totalWords":
+                        totalWords = p.getIntValue();
+                    break;
+
+                    case "journalGeneration":
+                        journalGeneration = p.getLongValue();
+                    break;
+
+                    default:
+                        p.skipChildren();
+                }
+            }
+        }
+
+        return new UsersDatabase(database, totalWords, journalGeneration);
+    }
+
+}
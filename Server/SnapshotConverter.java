@@ -0,0 +1,220 @@
+/**
+ *
+ * @class                                       SnapshotConverter
+ * @brief                                       Conversione del file di backup tra formato json e formato binario.
+ *                                              Uso: SnapshotConverter <dizionario> <input> <output> <json|binary>
+ *                                              (il formato di input e' riconosciuto dall'intestazione del file)
+ *                                              Generazione di un backup di prova e misura di lettura e scrittura:
+ *                                              SnapshotConverter <dizionario> generate <output> <utenti> [json|binary]
+ *                                              SnapshotConverter <dizionario> bench <input> [json|binary]
+ * @author                                      Simone Tassotti
+ * @date                                        18/10/2026
+ *
+ */
+package Server;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Server.Exception.StorageUserException;
+
+public class SnapshotConverter {
+
+    /** Variabili globali */
+    private static final int GAMES = 10;                    // Partite per utente generato
+    private static final int ATTEMPTS = 4;                  // Tentativi non vincenti per partita
+
+    /**
+     *
+     * @fun                     generate
+     * @brief                   Scrive un backup con n utenti sintetici: GAMES partite ciascuno su parole del dizionario,
+     *                          ATTEMPTS suggerimenti reali per partita, una partita su due vinta
+     *
+     */
+    private static void generate(WordsDictionary words, String output, int n, String format) throws FileNotFoundException, StorageUserException {
+        Random r = new Random(1);
+        ConcurrentHashMap<String, Utente> db = new ConcurrentHashMap<>();
+        for (int i = 0; i < n; i++) {
+            Utente u = new Utente("user" + i, "pw" + i);
+            for (int g = 0; g < GAMES; g++) {
+                String secret = words.get((int) (((long) i*GAMES + g) % words.size()));
+                FeedbackScorer scorer = new FeedbackScorer(secret);
+                u.addNewGamePlayed(secret);
+                for (int k = 0; k < ATTEMPTS; k++) {
+                    String guess = words.random(r);
+                    if(guess.length() <= secret.length()) u.addAttempt(FeedbackScorer.decode(scorer.score(guess)));
+                }
+                if(g % 2 == 0) {
+                    u.addAttempt(FeedbackScorer.decode(scorer.score(secret)));
+                    u.gameWin();
+                }
+                u.logout();
+            }
+            db.put(u.getUsername(), u);
+        }
+        if(!new BackupManager(output, format, words).updateUsers(new UsersDatabase(db, n*GAMES, 0))) {
+            System.err.println("<< IMPOSSIBILE SCRIVERE IL FILE DI OUTPUT >>\n");
+            return;
+        }
+        System.out.println("Generati " + n + " utenti in " + output + " (" + new File(output).length() + " byte)");
+    }
+
+    /**
+     *
+     * @fun                     heapUsed
+     * @brief                   Heap occupato dopo una garbage collection (byte)
+     *
+     */
+    private static long heapUsed() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     *
+     * @fun                     resetPeak
+     * @brief                   Azzera il picco di occupazione delle aree di heap
+     *
+     */
+    private static void resetPeak() {
+        heapUsed();
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(p.getType() == MemoryType.HEAP) p.resetPeakUsage();
+        }
+    }
+
+    /**
+     *
+     * @fun                     peak
+     * @brief                   Picco di occupazione dell'heap dall'ultimo resetPeak (MB)
+     *
+     */
+    private static long peak() {
+        long b = 0;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(p.getType() == MemoryType.HEAP) b += p.getPeakUsage().getUsed();
+        }
+        return b / (1024*1024);
+    }
+
+    /**
+     *
+     * @fun                     bench
+     * @brief                   Misura il ripristino del backup e la sua riscrittura: in streaming (come BackupManager)
+     *                          e costruendo prima l'intero documento in memoria (come il salvataggio precedente, ma con
+     *                          lo stesso buffer di scrittura per confrontare solo l'uso dell'heap)
+     *
+     */
+    private static void bench(WordsDictionary words, String input, String format) throws IOException {
+        File tmp = File.createTempFile("snapshot", ".bench");
+        tmp.deleteOnExit();
+        long base = heapUsed();
+
+        /** Ripristino, come all'avvio del server */
+        resetPeak();
+        long t = System.nanoTime();
+        UsersDatabase ud = new BackupManager(input, BackupManager.FORMAT_JSON, words).infoRecovery();
+        long read = (System.nanoTime() - t) / 1000000;
+        if(ud == null) {
+            System.err.println("<< FILE DI BACKUP NON VALIDO >>\n");
+            return;
+        }
+        long readPeak = peak();
+        long retained = (heapUsed() - base) / (1024*1024);
+        System.out.println("Ripristino: " + ud.exportUsers().size() + " utenti da " + new File(input).length() + " byte in " + read
+                + " ms - heap occupato " + retained + " MB (picco " + readPeak + " MB)");
+
+        /** Scrittura in streaming */
+        resetPeak();
+        t = System.nanoTime();
+        if(!new BackupManager(tmp.getPath(), format, words).updateUsers(ud)) {
+            System.err.println("<< IMPOSSIBILE SCRIVERE IL FILE DI OUTPUT >>\n");
+            return;
+        }
+        System.out.println("Scrittura " + format + " in streaming: " + (System.nanoTime() - t) / 1000000 + " ms - " + tmp.length()
+                + " byte (picco heap " + peak() + " MB)");
+
+        /** Scrittura con l'intero documento in memoria (solo json) */
+        if(!format.equals(BackupManager.FORMAT_JSON)) return;
+        resetPeak();
+        t = System.nanoTime();
+        try (DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64*1024))) {
+            ByteArrayOutputStream doc = new ByteArrayOutputStream();
+            SnapshotCodec.write(doc, ud.exportUsers(), ud.giveTotalWord(), ud.giveJournalGeneration());
+            dout.writeBytes(doc.toString(StandardCharsets.UTF_8));
+        } catch (OutOfMemoryError e) {
+            System.out.println("Scrittura json in memoria: heap esaurito");
+            return;
+        }
+        System.out.println("Scrittura json in memoria: " + (System.nanoTime() - t) / 1000000 + " ms (picco heap " + peak() + " MB)");
+    }
+
+    public static void main(String[] args) {
+
+        /** Controllo argomenti */
+        if(args.length < 3) throw new IllegalArgumentException("Numero di argomenti");
+
+        String dictionary = args[0];
+
+        /** Carico il dizionario usato per gli indici delle parole giocate */
+        WordsDictionary words = WordsDictionary.load(dictionary);
+        if(words == null) {
+            System.err.println("<< DIZIONARIO NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+            return;
+        }
+        Utente.useDictionary(words);
+
+        /** Generazione e misura */
+        try {
+            if(args[1].equals("generate")) {
+                if(args.length < 4) throw new IllegalArgumentException("Numero di argomenti");
+                generate(words, args[2], Integer.parseInt(args[3]), (args.length > 4) ? args[4] : BackupManager.FORMAT_JSON);
+                return;
+            }
+            if(args[1].equals("bench")) {
+                bench(words, args[2], (args.length > 3) ? args[3] : BackupManager.FORMAT_JSON);
+                return;
+            }
+        } catch (FileNotFoundException fnfe) {
+            System.err.println("<< FILE DI BACKUP NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+            return;
+        } catch (IOException | StorageUserException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        if(args.length != 4) throw new IllegalArgumentException("Numero di argomenti");
+        String input = args[1];
+        String output = args[2];
+        String format = args[3];
+
+        /** Leggo il backup e lo riscrivo nel formato richiesto */
+        try {
+            if(!new File(input).isFile()) throw new FileNotFoundException(input);
+            UsersDatabase ud = new BackupManager(input, BackupManager.FORMAT_JSON, words).infoRecovery();
+            if(ud == null) {
+                System.err.println("<< FILE DI BACKUP NON VALIDO >>\n");
+                return;
+            }
+            if(!new BackupManager(output, format, words).updateUsers(ud)) {
+                System.err.println("<< IMPOSSIBILE SCRIVERE IL FILE DI OUTPUT >>\n");
+                return;
+            }
+            System.out.println("Convertiti " + ud.exportUsers().size() + " utenti (" + new File(input).length() + " -> " + new File(output).length() + " byte)");
+        } catch (FileNotFoundException fnfe) {
+            System.err.println("<< FILE DI BACKUP NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+        }
+
+    }
+}
@@ -0,0 +1,97 @@
+package Server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @class                   SnapshotWriter
+ * @brief                   Thread che salva in background lo snapshot del database: scrive ogni intervallo di tempo
+ *                          oppure appena si accumulano abbastanza modifiche, fuori dal percorso delle richieste
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class SnapshotWriter implements Runnable {
+
+    /** Attributi oggetto */
+    private UsersDatabase us;
+    private long interval;                              // Millisecondi massimi tra due snapshot
+    private long changes;                               // Modifiche che anticipano lo snapshot
+    private AtomicLong pending;                         // Modifiche non ancora salvate
+    private ReentrantLock lock;
+    private Condition wake;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     SnapshotWriter
+     * @brief                   Metodo costruttore
+     * @param us                Database di gioco
+     * @param interval          Millisecondi massimi tra due snapshot
+     * @param changes           Numero di modifiche dopo il quale lo snapshot viene anticipato
+     * @param log               File di log
+     *
+     */
+    public SnapshotWriter(UsersDatabase us, long interval, long changes, Logger log) {
+
+        /** Controllo argomenti */
+        if(interval <= 0 || changes <= 0) throw new IllegalArgumentException();
+
+        this.us = us;
+        this.interval = interval;
+        this.changes = changes;
+        this.pending = new AtomicLong(0);
+        this.lock = new ReentrantLock();
+        this.wake = this.lock.newCondition();
+        this.log = log;
+    }
+
+    /**
+     *
+     * @fun                 changed
+     * @brief               Segnala una modifica al database; al raggiungimento della soglia sveglia il thread
+     *
+     */
+    public void changed() {
+        if(this.pending.incrementAndGet() != this.changes) return;
+        this.lock.lock();
+        try {
+            this.wake.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @fun                 run
+     * @brief               Ciclicamente salva lo snapshot se ci sono modifiche (o se il salvataggio precedente e' fallito)
+     *
+     */
+    @Override
+    public void run() {
+        boolean retry = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            this.lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(this.interval);
+                while (this.pending.get() < this.changes && remaining > 0) {
+                    remaining = this.wake.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                this.lock.unlock();
+            }
+
+            if(this.pending.getAndSet(0) == 0 && !retry) continue;
+            retry = !this.us.snapshot();
+            if(retry) this.log.warning(Thread.currentThread().getName() + " Snapshot non riuscito - Nuovo tentativo al prossimo intervallo\n");
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package Server;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ *
+ * @class                   Translator
+ * @brief                   Traduzione delle parole segrete fuori dal percorso delle richieste: le traduzioni sono
+ *                          richieste in anticipo da un thread dedicato e salvate in una cache su disco (una riga
+ *                          "parola<TAB>traduzione" per voce), per cui ogni parola del dizionario viene tradotta al
+ *                          piu' una volta. Se la traduzione non arriva in tempo si usa la parola originale
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class Translator {
+
+    /** Variabili globali */
+    public static final String endpointDefault = "https://api.mymemory.translated.net";
+    public static final long timeoutMsDefault = 3000;
+
+    /** Attributi */
+    private final String endpoint;                          // Indirizzo del servizio (configurabile per i test)
+    private final int timeoutMs;
+    private final ConcurrentHashMap<String, String> cache;
+    private PrintWriter cacheFile;                          // Nuove voci accodate al file della cache, null se non disponibile
+    private final ExecutorService fetcher;
+    private final ObjectMapper mapper;
+    private Logger log;
+
+    /**
+     *
+     * @fun                     Translator
+     * @brief                   Metodo costruttore: carica la cache su disco e avvia il thread delle richieste
+     * @param endpoint          Indirizzo del servizio di traduzione
+     * @param timeoutMs         Tempo massimo per una richiesta (connessione e lettura)
+     * @param cachePathname     File della cache delle traduzioni
+     * @param log               File di log
+     *
+     */
+    public Translator(String endpoint, long timeoutMs, String cachePathname, Logger log) {
+
+        /** Controllo argomenti */
+        if(endpoint.equals("") || cachePathname.equals("")) throw new IllegalArgumentException();
+        if(timeoutMs <= 0) throw new IllegalArgumentException();
+
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length()-1) : endpoint;
+        this.timeoutMs = (int) Math.min(timeoutMs, Integer.MAX_VALUE);
+        this.cache = new ConcurrentHashMap<>();
+        this.mapper = new ObjectMapper();
+        this.log = log;
+
+        /** Carico le traduzioni gia' ottenute */
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(cachePathname), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if(tab > 0) this.cache.put(line.substring(0, tab), line.substring(tab+1));
+            }
+        } catch (FileNotFoundException e) {
+            /** Primo avvio: cache vuota */
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            this.cacheFile = new PrintWriter(new OutputStreamWriter(new FileOutputStream(cachePathname, true), StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            this.cacheFile = null;
+        }
+        this.log.config(Thread.currentThread().getName() + " Traduzioni: " + this.cache.size() + " parole in cache, servizio " + this.endpoint + "\n");
+
+        this.fetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Translator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 fetch
+     * @brief               Richiede la traduzione al servizio e la salva nella cache
+     * @param word          Parola da tradurre
+     * @return              Traduzione, null in caso di errore
+     *
+     */
+    private String fetch(String word) {
+        String cached = this.cache.get(word);
+        if(cached != null) return cached;
+
+        HttpURLConnection c = null;
+        try {
+            URL url = new URL(this.endpoint + "/get?q=" + URLEncoder.encode(word, StandardCharsets.UTF_8) + "&langpair=en%7Cit");
+            c = (HttpURLConnection) url.openConnection();
+            c.setConnectTimeout(this.timeoutMs);
+            c.setReadTimeout(this.timeoutMs);
+            this.log.info(Thread.currentThread().getName() + " Richiesta traduzione: " + url + "\n");
+            if(c.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                this.log.warning(Thread.currentThread().getName() + " Traduzione di " + word + " non riuscita: risposta " + c.getResponseCode() + "\n");
+                return null;
+            }
+
+            /** Estraggo responseData.translatedText dal JSON ricevuto */
+            JsonNode root;
+            try (InputStream in = c.getInputStream()) {
+                root = this.mapper.readTree(in);
+            }
+            JsonNode text = root.path("responseData").path("translatedText");
+            if(!text.isTextual() || text.textValue().isBlank()) return null;
+            String translated = text.textValue().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+
+            if(this.cache.putIfAbsent(word, translated) == null && this.cacheFile != null) {
+                synchronized (this.cacheFile) {
+                    this.cacheFile.println(word + "\t" + translated);
+                    this.cacheFile.flush();
+                }
+            }
+            return translated;
+        } catch (IOException e) {
+            this.log.warning(Thread.currentThread().getName() + " Traduzione di " + word + " non riuscita: " + e + "\n");
+            return null;
+        } finally {
+            if(c != null) c.disconnect();
+        }
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     prefetch
+     * @brief                   Avvia in background la traduzione di una parola (immediata se gia' in cache)
+     * @param word              Parola da tradurre
+     * @return                  Traduzione futura (null in caso di errore)
+     *
+     */
+    public CompletableFuture<String> prefetch(String word) {
+        String cached = this.cache.get(word);
+        if(cached != null) return CompletableFuture.completedFuture(cached);
+        return CompletableFuture.supplyAsync(() -> fetch(word), this.fetcher);
+    }
+
+    /**
+     *
+     * @fun                     await
+     * @brief                   Attende la traduzione richiesta con prefetch entro il timeout configurato; se non
+     *                          arriva in tempo (o fallisce) restituisce la parola originale. Una richiesta in ritardo
+     *                          non viene annullata, cosi' la traduzione finisce comunque in cache
+     * @param word              Parola da tradurre
+     * @param pending           Traduzione richiesta con prefetch
+     * @return                  Traduzione, oppure la parola originale
+     *
+     */
+    public String await(String word, CompletableFuture<String> pending) {
+        try {
+            String res = pending.get(this.timeoutMs, TimeUnit.MILLISECONDS);
+            if(res != null) return res;
+        } catch (TimeoutException e) {
+            this.log.warning(Thread.currentThread().getName() + " Traduzione di " + word + " in ritardo: uso la parola originale\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return word;
+    }
+
+    /**
+     *
+     * @fun                     cached
+     * @brief                   Numero di traduzioni in cache
+     *
+     */
+    public int cached() {
+        return this.cache.size();
+    }
+
+    /**
+     *
+     * @fun                     close
+     * @brief                   Ferma il thread delle richieste e chiude il file della cache
+     *
+     */
+    public void close() {
+        this.fetcher.shutdownNow();
+        if(this.cacheFile != null) {
+            synchronized (this.cacheFile) {
+                this.cacheFile.close();
+            }
+        }
+    }
+
+}
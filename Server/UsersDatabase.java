@@ -1,36 +1,26 @@
 package Server;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.MalformedURLException;
-import java.net.Socket;
-import java.net.URL;
+import java.io.IOException;
 import java.rmi.NoSuchObjectException;
-import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 
-import javax.net.ssl.SSLSocketFactory;
-
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import General.Utils;
 import Interfaces.ServerNotify;
 import Server.Exception.StorageUserException;
 
@@ -44,27 +34,72 @@ import Server.Exception.StorageUserException;
  */
 public class UsersDatabase {
     
+    /** Variabili globali */
+    public static final int feedbackCacheSizeDefault = 4096;
+    public static final String journalSyncDefault = Journal.SYNC_INTERVAL;
+    public static final long journalSyncMsDefault = 200;
+    public static final long journalCheckpointBytesDefault = 64*1024*1024;
+    public static final String persistenceDefault = "background";
+    public static final long snapshotIntervalMsDefault = 5000;
+    public static final long snapshotChangesDefault = 1000;
+    public static final String userStoreDefault = "heap";
+    public static final long roundEpochMsDefault = 0;
+    public static final String podiumModeDefault = "rmi";
+
     /** Attributi */
     @JsonIgnore
     private BackupManager backup;
-    private HashMap<String, Utente> database;
+    private ConcurrentHashMap<String, Utente> database;
     @JsonIgnore
-    private LinkedList<Utente> classifica;
+    private Leaderboard classifica;
     @JsonIgnore
-    private HashMap<String, Utente> online;
+    private ConcurrentHashMap<String, Utente> online;
     @JsonIgnore
-    private LinkedList<String> words;
+    private WordsDictionary words;
     @JsonIgnore
-    private String secretWord;
-    private int totalWords;
+    private AtomicReference<GameRound> current;         // Round corrente, sostituito in blocco ad ogni nuova parola
     @JsonIgnore
-    private long gameTime;
+    private Translator translator;
+    @JsonIgnore
+    private NotificationDispatcher notifier;            // Invio asincrono della classifica ai client
+    @JsonIgnore
+    private PodiumMulticaster podiumCast;               // Podio in multicast, null se inviato via RMI
+    @JsonIgnore
+    private PodiumPublisher podium;                     // Invio del podio solo se cambiato, al piu' uno per intervallo
+    @JsonIgnore
+    private String nextWord;                            // Parola del prossimo round, scelta in anticipo (solo thread WordsUpdater)
+    @JsonIgnore
+    private CompletableFuture<String> nextTranslation;  // Traduzione di nextWord, richiesta durante il round corrente
     @JsonIgnore
-    private Thread wordsUpdate;
+    private FeedbackCache feedbackCache;                // Suggerimenti gia' calcolati nel round corrente
     @JsonIgnore
-    private String translated;
+    private Journal journal;                            // Journal delle modifiche, null se si salva lo snapshot ad ogni modifica
+    @JsonIgnore
+    private Thread journalSync;
+    @JsonIgnore
+    private long journalCheckpointBytes;
+    @JsonIgnore
+    private SnapshotWriter snapshots;                   // Snapshot in background, null se non attivo
+    @JsonIgnore
+    private boolean blockingPersistence;                // true se ogni modifica attende la scrittura su disco
+    @JsonIgnore
+    private Thread snapshotThread;
+    private volatile int totalWords;
+    private long journalGeneration;                     // Ultima generazione del journal inclusa in questo snapshot
+    @JsonIgnore
+    private HistoryStore history;                       // Archivio delle partite concluse, null se tutto in memoria
+    @JsonIgnore
+    private OffHeapUserStore store;                     // Archivio utenti fuori heap, null se gli utenti sono tutti in memoria
+    @JsonIgnore
+    private long gameTime;
+    @JsonIgnore
+    private WordsUpdater wordsUpdate;
     @JsonIgnore
     private Logger log;
+    @JsonIgnore
+    private ReentrantReadWriteLock changesLock;         // Lettura: modifiche agli utenti - Scrittura: checkpoint del journal
+    @JsonIgnore
+    private ReentrantLock classificaLock;               // Lock della sola classifica
 
 
     /********** METODI PRIVATI **********/
@@ -73,134 +108,216 @@ public class UsersDatabase {
      * 
      * @fun                 updatePlaces
      * @brief               Si occupa di aggiornare la classifica di gioco
+     * @param changed       Utente il cui punteggio e' cambiato, null se nessuno
      * 
      */
-    private void updatePlaces() {
+    private void updatePlaces(Utente changed) {
 
         /** Aggiorno la classifica */
         this.log.warning(Thread.currentThread().getName() + " Aggiornamento classifica\n");
-        this.classifica.sort(null);
-        LinkedList<String> l = new LinkedList<>();
-        Iterator<Utente> i = this.classifica.iterator();
-        int count = 0;
-        while (i.hasNext() && count < 3) {
-            Utente u = i.next();
-            l.add((count+1) + ") Utente " + u.getUsername() + " - Punteggio: " + u.awsUtente());
-            count++;
-        }
-               
-        /** Avverto gli utenti di un cambiamento in classifica */
-        this.log.info(Thread.currentThread().getName() + " Notifico aggiornamento classifica agli utenti\n");
-        i = online.values().iterator();
-        while (i.hasNext()) {
-            Utente u = i.next();
-            try {
-                u.giveServerNotify().ServerAlert(l);
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
+        this.classificaLock.lock();
+        try {
+
+            /** Riposiziono solo l'utente modificato */
+            if(changed != null) this.classifica.update(changed);
+            List<String> top = this.classifica.top(3);
+            double[] scores = new double[top.size()];
+            for (int i = 0; i < scores.length; i++) scores[i] = this.classifica.score(top.get(i));
+
+            /** Avverto gli utenti solo se il podio e' cambiato (in ordine, senza attendere i client) */
+            this.podium.offer(PodiumPublisher.fingerprint(top, scores), () -> {
+                this.log.info(Thread.currentThread().getName() + " Notifico aggiornamento classifica agli utenti\n");
+                LinkedList<String> l = new LinkedList<>();
+                for (int i = 0; i < scores.length; i++) l.add((i+1) + ") Utente " + top.get(i) + " - Punteggio: " + scores[i]);
+                return l;
+            });
+        } finally {
+            this.classificaLock.unlock();
         }
     }
 
     /**
      * 
-     * @fun                 httpRequest
-     * @brief               Effettua una richiesta http per tradurre la parola segreta
-     * @return              Parola tradotta in caso di successo, null altrimenti
+     * @fun                 logFeedbackCache
+     * @brief               Riporta nel log i contatori della cache dei suggerimenti
      * 
      */
-    private String httpRequest() {
+    private void logFeedbackCache() {
+        this.log.info(Thread.currentThread().getName() + " Cache suggerimenti: " + this.feedbackCache.size() + " parole nel round - hit " + this.feedbackCache.hits()
+                + " miss " + this.feedbackCache.misses() + " non memorizzate " + this.feedbackCache.rejected() + "\n");
+    }
 
-        /** Controllo argomenti */
-        if(secretWord.equals("")) return null;
+    /**
+     * 
+     * @fun                 replayRecord
+     * @brief               Riapplica allo stato in memoria una modifica letta dal journal
+     * @param type          Tipo di record
+     * @param username      Utente a cui si riferisce il record
+     * @param arg           Argomento del record
+     * @throws StorageUserException
+     * 
+     */
+    private void replayRecord(byte type, String username, String arg) throws StorageUserException {
+        if(type == Journal.ROUND) {
+            this.totalWords = Integer.parseInt(arg);
+            return;
+        }
+        if(type == Journal.REGISTER) {
+            this.database.putIfAbsent(username, new Utente(username, arg));
+            return;
+        }
+        Utente u = this.database.get(username);
+        if(u == null) throw new StorageUserException("Journal: utente " + username + " non registrato");
+        switch (type) {
+            case Journal.PLAY:
+                u.addNewGamePlayed(arg);
+            break;
+
+            case Journal.ATTEMPT:
+                u.addAttempt(arg);
+            break;
+
+            case Journal.WIN:
+                u.gameWin();
+            break;
+        }
+    }
 
-        /** Ricavo indizzo e porta del sito */
-        URL url;
+    /**
+     * 
+     * @fun                 recordChange
+     * @brief               Registra una modifica (da chiamare con il lock dell'utente): la accoda al journal, la
+     *                      conta per il prossimo snapshot in background oppure la scrive nel suo slot
+     *                      dell'archivio fuori heap
+     * @param type          Tipo di record
+     * @param username      Utente a cui si riferisce il record ("" per il cambio parola)
+     * @param arg           Argomento del record
+     * @return              Numero di sequenza del record, 0 se il journal non e' attivo, -1 in caso di errore
+     * 
+     */
+    private long recordChange(byte type, String username, String arg) {
+        if(this.store != null) {
+            if(type == Journal.ROUND) this.store.setTotalWords(Integer.parseInt(arg));
+            else if(type != Journal.REGISTER) {
+                Utente u = this.online.get(username);
+                if(u == null || !this.store.save(u)) return -1;
+            }
+            return 0;
+        }
+        if(this.snapshots != null) this.snapshots.changed();
+        if(this.journal == null) return 0;
         try {
-            url = new URL("https://api.mymemory.translated.net");
-        } catch (MalformedURLException e) {
+            return this.journal.append(type, username, arg);
+        } catch (IOException e) {
             e.printStackTrace();
-            return null;
+            return -1;
         }
-        String hostname = url.getHost();
-        int port = 443;
-        SSLSocketFactory ssf = (SSLSocketFactory) SSLSocketFactory.getDefault();
-
-        /** Inizio comunicazione */
-        try (
-            Socket socket = ssf.createSocket(hostname, port);
-            PrintWriter output = new PrintWriter(socket.getOutputStream());
-            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        ) {
-
-            /** Formalizzo richiesta HTTP e la invio */
-            this.log.info(Thread.currentThread().getName() + " In attesa di ricevere la parola segreta tradotta\n");
-            String m = "GET /get?q=" + secretWord + "&langpair=en|it HTTP/1.1\r\n"
-            + "Host: " + hostname + "\r\n"
-            + "Connection: close\r\n"
-            + "\r\n";
-            this.log.warning(Thread.currentThread().getName() + " Richiesta https inviata: " + m + "\n");
-            output.write(m);
-            output.flush();
-
-            /** Attendo la risposta dal server */
-            String line, save = "";
-            while ((line = reader.readLine()) != null) {
-                if(line.contains("{")) save = line;
-            }
-
-            /** Estraggo le informazioni dal JSON inviatomi */
-            JsonFactory factory = new JsonFactory();
-            ObjectMapper mapper = new ObjectMapper();
-            JsonParser parser = factory.createParser(save);
-            mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            parser.setCodec(mapper);
-            JsonNode rootNode = mapper.readTree(save);  
+    }
 
-            Iterator<Map.Entry<String,JsonNode>> fieldsIterator = rootNode.fields();
-            
-            while (fieldsIterator.hasNext()) {
+    /**
+     * 
+     * @fun                 persist
+     * @brief               Rende persistenti le modifiche: snapshot completo, oppure commit del journal fino a seq
+     * @param seq           Ultimo record del journal da rendere persistente
+     * @return              true in caso di successo, false altrimenti
+     * 
+     */
+    private boolean persist(long seq) {
+        if(this.store != null) return seq != -1;
+        if(this.snapshots != null) return true;
+        if(this.journal == null) return this.backup.updateUsers(this);
+        if(seq == -1) return false;
+        try {
+            this.journal.commit(seq);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-                Map.Entry<String,JsonNode> field = fieldsIterator.next();
-                if(field.getKey().equals("responseData")) {
-                    JsonNode translatedValue = field.getValue();
-                    if(translatedValue.get("translatedText") != null) return translatedValue.get("translatedText").textValue();
-                }
+    /**
+     * 
+     * @fun                 checkpoint
+     * @brief               Scrive uno snapshot completo e svuota il journal (con le modifiche ferme)
+     * 
+     */
+    private void checkpoint() {
+        try {
+            this.journalGeneration = this.journal.generation();
+            if(!this.backup.updateUsers(this)) {
+                this.log.warning(Thread.currentThread().getName() + " Journal: snapshot non riuscito - Journal mantenuto\n");
+                return;
             }
-            this.log.info(Thread.currentThread().getName() + " Parola tradotta ricevuta");
-            return save;
-        } catch (Exception e) {
+            this.journal.truncate();
+            this.log.info(Thread.currentThread().getName() + " Journal: checkpoint completato\n");
+        } catch (IOException e) {
             e.printStackTrace();
-            return null;
         }
     }
 
     /**
      * 
-     * @fun                         uploadWords
-     * @brief                       Carica dal dizionario in memoria le parole da usare
-     * @param pathname              File dal quale caricare il dizionario di parole
-     * @return                      Il dizionario di parole, null altrimenti
+     * @fun                 startSnapshots
+     * @brief               Avvia il thread di snapshot in background
+     * @param interval      Millisecondi massimi tra due snapshot
+     * @param changes       Numero di modifiche dopo il quale lo snapshot viene anticipato
      * 
      */
-    private LinkedList<String> uploadWords(String pathname) {
-        
-        /** Controllo esistenza file */
-        LinkedList<String> w = new LinkedList<>();
-        File f = new File(pathname);
-        if(!f.exists() || !f.isFile()) return null;
-        /** Upload delle parole segrete */
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String s = br.readLine();
-            while ((s = br.readLine()) != null) {
-                w.add(s);
+    private void startSnapshots(long interval, long changes) {
+        this.snapshots = new SnapshotWriter(this, interval, changes, this.log);
+        this.snapshotThread = new Thread(this.snapshots, "SnapshotWriter");
+        this.snapshotThread.start();
+    }
+
+    /**
+     * 
+     * @fun                 importBackup
+     * @brief               Primo avvio con l'archivio fuori heap: vi importa gli utenti del file di backup
+     * @throws FileNotFoundException
+     * 
+     */
+    private void importBackup() throws FileNotFoundException {
+        UsersDatabase ud = this.backup.infoRecovery();
+        if(ud == null) return;
+        for (Utente u : ud.exportUsers()) {
+            if(this.store.register(u.getUsername(), u.givePassword()) == -1 || !this.store.save(u)) {
+                this.log.warning(Thread.currentThread().getName() + " Archivio utenti: impossibile importare " + u.getUsername() + "\n");
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
         }
-        
-        return w;
+        this.store.setTotalWords(ud.giveTotalWord());
+        this.log.config(Thread.currentThread().getName() + " Archivio utenti: importati " + this.store.size() + " utenti dal backup\n");
+    }
+
+    /**
+     * 
+     * @fun                 startRounds
+     * @brief               Pubblica il round iniziale (nessuna parola) e avvia i cambi parola pianificati
+     * @param timegame      Tempo di gioco per ogni parola (secondi)
+     * @param epoch         Istante di riferimento dei cambi parola (ms)
+     * 
+     */
+    private void startRounds(long timegame, long epoch) {
+        long now = System.currentTimeMillis();
+        this.gameTime = timegame;
+        this.current = new AtomicReference<>(new GameRound(this.totalWords, "", "", now, now));
+        this.wordsUpdate = new WordsUpdater(this, gameTime, epoch, log);
+        this.wordsUpdate.start();
+    }
+
+    /**
+     * 
+     * @fun                 onlineUser
+     * @brief               Recupera un utente online verificandone la password
+     * @param username      Username utente
+     * @param password      Password utente
+     * @return              L'utente online, null se non e' online o la password e' errata
+     * 
+     */
+    private Utente onlineUser(String username, String password) {
+        Utente u = this.online.get(username);
+        if((u == null) || (!u.checkUserPsw(password))) return null;
+        return u;
     }
 
     /************************************/
@@ -213,6 +330,21 @@ public class UsersDatabase {
      */
     public UsersDatabase() {}
 
+    /**
+     * 
+     * @fun                     UserDatabase
+     * @brief                   Metodo costruttore usato per il ripristino dallo snapshot
+     * @param database          Utenti letti dallo snapshot
+     * @param totalWords        Numero totale di parole pubblicate
+     * @param journalGeneration Ultima generazione del journal inclusa nello snapshot
+     * 
+     */
+    public UsersDatabase(ConcurrentHashMap<String, Utente> database, int totalWords, long journalGeneration) {
+        this.database = database;
+        this.totalWords = totalWords;
+        this.journalGeneration = journalGeneration;
+    }
+
     /**
      * 
      * @fun                             UserDatabase
@@ -220,23 +352,84 @@ public class UsersDatabase {
      * @param backupSaving              File dal quale recupero il vecchio stato del server
      * @param pathname                  File dizionario delle parole segrete da usare
      * @param timegame                  Tempo di gioco per ogni parola
+     * @param settings                  Parametri del file di config (coppie parametro, valore)
      * @param log                       File di log
      * @throws FileNotFoundException
      * 
      */
-    public UsersDatabase(String backupSaving, String dictionary, long timegame, Logger log) throws FileNotFoundException {
+    public UsersDatabase(String backupSaving, String dictionary, long timegame, String[][] settings, Logger log) throws FileNotFoundException {
 
         /** Controllo argomenti */
         if(dictionary == null) throw new NullPointerException();
         if(backupSaving == null) throw new NullPointerException();
 
         /** Costruzione strutture */
-        this.database = new HashMap<>();
-        this.classifica = new LinkedList<>();
-        this.backup = new BackupManager(backupSaving);
-        this.online = new HashMap<>();
-        this.secretWord = "";
-        if((this.words = uploadWords(dictionary)) == null) throw new FileNotFoundException();
+        this.changesLock = new ReentrantReadWriteLock();
+        this.classificaLock = new ReentrantLock();
+        this.database = new ConcurrentHashMap<>();
+        this.classifica = new Leaderboard();
+        this.online = new ConcurrentHashMap<>();
+        String save = Utils.filterParam(settings, "feedbackCacheSize");
+        this.feedbackCache = new FeedbackCache(save.equals("") ? feedbackCacheSizeDefault : Integer.parseInt(save));
+        if((this.words = WordsDictionary.load(dictionary)) == null) throw new FileNotFoundException();
+        Utente.useDictionary(this.words);
+
+        String userStore = ((save = Utils.filterParam(settings, "userStore")).equals("")) ? userStoreDefault : save;
+
+        /** Modalita' a livelli: le partite concluse vengono spostate su disco gia' durante il ripristino */
+        if(Utils.filterParam(settings, "tieredHistory").equals("true") && !userStore.equals("offheap")) {
+            String historyFile = ((save = Utils.filterParam(settings, "historyFile")).equals("")) ? backupSaving + ".history" : save;
+            try {
+                this.history = new HistoryStore(historyFile, this.words);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new FileNotFoundException(historyFile);
+            }
+            Utente.useHistoryStore(this.history);
+        }
+        String format = ((save = Utils.filterParam(settings, "snapshotFormat")).equals("")) ? BackupManager.FORMAT_JSON : save;
+        this.backup = new BackupManager(backupSaving, format, this.words);
+    
+        this.log = log;
+        String translatorUrl = ((save = Utils.filterParam(settings, "translatorUrl")).equals("")) ? Translator.endpointDefault : save;
+        long translatorTimeoutMs = ((save = Utils.filterParam(settings, "translatorTimeoutMs")).equals("")) ? Translator.timeoutMsDefault : Long.parseLong(save);
+        String translationCache = ((save = Utils.filterParam(settings, "translationCache")).equals("")) ? backupSaving + ".translations" : save;
+        this.translator = new Translator(translatorUrl, translatorTimeoutMs, translationCache, log);
+        long roundEpochMs = ((save = Utils.filterParam(settings, "roundEpochMs")).equals("")) ? roundEpochMsDefault : Long.parseLong(save);
+        int notifyThreads = ((save = Utils.filterParam(settings, "notifyThreads")).equals("")) ? NotificationDispatcher.threadsDefault : Integer.parseInt(save);
+        long notifyTimeoutMs = ((save = Utils.filterParam(settings, "notifyTimeoutMs")).equals("")) ? NotificationDispatcher.timeoutMsDefault : Long.parseLong(save);
+        int notifyMaxFailures = ((save = Utils.filterParam(settings, "notifyMaxFailures")).equals("")) ? NotificationDispatcher.maxFailuresDefault : Integer.parseInt(save);
+        this.notifier = new NotificationDispatcher(notifyThreads, notifyTimeoutMs, notifyMaxFailures, log);
+        if((((save = Utils.filterParam(settings, "podiumMode")).equals("")) ? podiumModeDefault : save).equals("multicast")) {
+            String podiumGroup = ((save = Utils.filterParam(settings, "podiumGroup")).equals("")) ? PodiumMulticaster.groupDefault : save;
+            int podiumPort = ((save = Utils.filterParam(settings, "podiumPort")).equals("")) ? PodiumMulticaster.portDefault : Integer.parseInt(save);
+            try {
+                this.podiumCast = new PodiumMulticaster(podiumGroup, podiumPort, log);
+            } catch (IOException e) {
+                this.log.warning(Thread.currentThread().getName() + " Gruppo multicast del podio non disponibile (" + e + ") - notifiche via RMI\n");
+            }
+        }
+        long podiumIntervalMs = ((save = Utils.filterParam(settings, "podiumIntervalMs")).equals("")) ? PodiumPublisher.intervalMsDefault : Long.parseLong(save);
+        this.podium = (this.podiumCast != null) ? new PodiumPublisher(podiumIntervalMs, true, this.podiumCast::publish, log)
+                                                : new PodiumPublisher(podiumIntervalMs, false, this.notifier::publish, log);
+
+        /** Archivio fuori heap: gli utenti restano su disco e in memoria vengono caricati solo quelli online */
+        if(userStore.equals("offheap")) {
+            String userStoreFile = ((save = Utils.filterParam(settings, "userStoreFile")).equals("")) ? backupSaving + ".users" : save;
+            try {
+                this.store = new OffHeapUserStore(userStoreFile, log);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new FileNotFoundException(userStoreFile);
+            }
+            if(this.store.size() == 0) importBackup();
+            this.totalWords = this.store.totalWords();
+            this.store.forEach(this.classifica::update);
+            this.log.config(Thread.currentThread().getName() + " Archivio utenti fuori heap: " + this.store.size() + " utenti da " + userStoreFile
+                    + " (" + this.store.memoryBytes()/(1024*1024) + " MB mappati) - journal e snapshot non usati\n");
+            startRounds(timegame, roundEpochMs);
+            return;
+        }
     
         /** Ripristino informazioni */
         UsersDatabase ud = this.backup.infoRecovery();
@@ -244,7 +437,6 @@ public class UsersDatabase {
             List<Utente> list = List.copyOf(ud.exportUsers());
             for (Utente utente : list) {
                 this.database.put(utente.getUsername(), utente);
-                this.classifica.add(utente);
             }
             this.totalWords = ud.giveTotalWord();
             System.out.println("LE PAROLE: " + this.totalWords);
@@ -252,11 +444,51 @@ public class UsersDatabase {
             this.totalWords = 0;
         }
        
-        this.log = log;
-        this.gameTime = timegame;
-        this.translated = "";
-        this.wordsUpdate = new Thread(new WordsUpdater(this, gameTime, log));
-        this.wordsUpdate.start();
+        this.log.config(Thread.currentThread().getName() + " Dizionario caricato: " + this.words.size() + " parole, "
+                + (this.words.size() == 0 ? 0 : this.words.memoryBytes() / this.words.size()) + " byte per parola\n");
+
+        /** In modalita' journal riapplico le modifiche successive all'ultimo snapshot */
+        String persistence = ((save = Utils.filterParam(settings, "persistence")).equals("")) ? persistenceDefault : save;
+        boolean syncAlways = false;
+        if(persistence.equals("journal")) {
+            String journalFile = ((save = Utils.filterParam(settings, "journalFile")).equals("")) ? backupSaving + ".journal" : save;
+            String journalSync = ((save = Utils.filterParam(settings, "journalSync")).equals("")) ? journalSyncDefault : save;
+            long journalSyncMs = ((save = Utils.filterParam(settings, "journalSyncMs")).equals("")) ? journalSyncMsDefault : Long.parseLong(save);
+            this.journalCheckpointBytes = ((save = Utils.filterParam(settings, "journalCheckpointBytes")).equals("")) ? journalCheckpointBytesDefault : Long.parseLong(save);
+            try {
+                this.journal = new Journal(journalFile, journalSync, journalSyncMs, log);
+                long n = this.journal.replay(this::replayRecord, (ud != null) ? ud.journalGeneration : 0);
+                this.log.config(Thread.currentThread().getName() + " Journal: riapplicati " + n + " record da " + journalFile + "\n");
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new FileNotFoundException(journalFile);
+            }
+            syncAlways = journalSync.equals(Journal.SYNC_ALWAYS);
+            if(!syncAlways) {
+                this.journalSync = new Thread(this.journal, "JournalSync");
+                this.journalSync.start();
+            }
+        }
+
+        /** Snapshot completo ad ogni modifica oppure commit del journal con fsync: le richieste attendono il disco */
+        this.blockingPersistence = persistence.equals("journal") ? syncAlways : !persistence.equals("background");
+
+        /** Ricostruisco punteggi e classifica */
+        for (Utente utente : this.database.values()) {
+            utente.rebuildScore();
+            utente.logout();
+            this.classifica.update(utente);
+        }
+        if(this.journal != null) checkpoint();
+
+        /** In modalita' background gli snapshot sono scritti da un thread dedicato */
+        if(persistence.equals("background")) {
+            long interval = ((save = Utils.filterParam(settings, "snapshotIntervalMs")).equals("")) ? snapshotIntervalMsDefault : Long.parseLong(save);
+            long changes = ((save = Utils.filterParam(settings, "snapshotChanges")).equals("")) ? snapshotChangesDefault : Long.parseLong(save);
+            startSnapshots(interval, changes);
+        }
+
+        startRounds(timegame, roundEpochMs);
 
     }
 
@@ -270,17 +502,85 @@ public class UsersDatabase {
 
         /** Invio interrupt ai vari thread gestiti */
         this.log.warning(Thread.currentThread().getName() + " Sto fermando il database\n");
-        this.wordsUpdate.interrupt();
         try {
-            this.wordsUpdate.join();
-            this.backup.updateUsers(this);
+            this.wordsUpdate.stop();
+            logFeedbackCache();
+            if(this.store != null) {
+                this.log.info(Thread.currentThread().getName() + " Archivio utenti fuori heap: " + this.store.size() + " utenti\n");
+                this.store.close();
+            } else if(this.snapshots != null) {
+                this.snapshotThread.interrupt();
+                this.snapshotThread.join();
+                snapshot();
+            } else if(this.journal == null) this.backup.updateUsers(this);
+            else {
+                if(this.journalSync != null) {
+                    this.journalSync.interrupt();
+                    this.journalSync.join();
+                }
+                checkpoint();
+                this.journal.close();
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if(this.history != null) {
+            this.log.info(Thread.currentThread().getName() + " Storico su disco: " + this.history.size() + " byte\n");
+            this.history.close();
+        }
+        this.log.info(Thread.currentThread().getName() + " Traduzioni in cache: " + this.translator.cached() + "\n");
+        this.translator.close();
+        this.podium.close();
+        this.notifier.close();
+        if(this.podiumCast != null) this.podiumCast.close();
         this.log.warning(Thread.currentThread().getName() + " Database fermato\n");
 
     }
 
+    /**
+     * 
+     * @fun                 snapshot
+     * @brief               Salva lo snapshot in background senza fermare le partite in corso: ogni utente viene
+     *                      copiato sotto il proprio lock appena prima di essere scritto, e la copia e' scartata
+     *                      subito dopo, per cui in memoria c'e' al piu' una copia alla volta
+     * @return              true in caso di successo, false altrimenti
+     * 
+     */
+    public boolean snapshot() {
+        Collection<Utente> users = this.database.values();
+        Collection<Utente> copies = new AbstractCollection<Utente>() {
+            @Override
+            public Iterator<Utente> iterator() {
+                Iterator<Utente> i = users.iterator();
+                return new Iterator<Utente>() {
+                    @Override
+                    public boolean hasNext() {
+                        return i.hasNext();
+                    }
+
+                    @Override
+                    public Utente next() {
+                        Utente u = i.next();
+                        u.userLock().lock();
+                        try {
+                            return u.snapshotCopy();
+                        } finally {
+                            u.userLock().unlock();
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return users.size();
+            }
+        };
+        boolean res = this.backup.writeSnapshot(copies, this.totalWords, this.journalGeneration);
+        if(res) this.log.info(Thread.currentThread().getName() + " Snapshot salvato (" + users.size() + " utenti)\n");
+        return res;
+    }
+
     /**
      * 
      * @fun                 exportUsers
@@ -303,35 +603,95 @@ public class UsersDatabase {
         return this.totalWords;
     }
 
+    /**
+     * 
+     * @fun             giveRound
+     * @brief           Restituisce il round corrente (immutabile, letto senza lock)
+     * @return          Round corrente
+     * 
+     */
+    public GameRound giveRound() {
+        return this.current.get();
+    }
+
+    /**
+     * 
+     * @fun             remainingRoundMs
+     * @brief           Tempo che manca alla fine del round corrente
+     * @return          Millisecondi alla prossima parola (0 se il cambio e' gia' dovuto)
+     * 
+     */
+    public long remainingRoundMs() {
+        return Math.max(0, this.current.get().end - System.currentTimeMillis());
+    }
+
+    /**
+     * 
+     * @fun             blockingPersistence
+     * @brief           Indica se le richieste che modificano gli utenti attendono la scrittura su disco
+     *                  (persistence=snapshot, oppure journal con journalSync=always)
+     * @return          true se le modifiche sono rese persistenti in modo sincrono
+     * 
+     */
+    public boolean blockingPersistence() {
+        return this.blockingPersistence;
+    }
+
+    /**
+     * 
+     * @fun             giveJournalGeneration
+     * @brief           Restituisce l'ultima generazione del journal inclusa nello snapshot
+     * @return          Generazione del journal
+     * 
+     */
+    public long giveJournalGeneration() {
+        return this.journalGeneration;
+    }
+
     /**
      * 
      * @fun                     changeWord
      * @brief                   Cambia la parola segreta del server
-     * @throws RemoteException
+     * @param end               Istante previsto per il cambio parola successivo (ms)
      * 
      */
-    public void changeWord() {
-        synchronized(database) {
-            
-            Iterator<Utente> i = online.values().iterator();
-            this.log.warning(Thread.currentThread().getName() + " Pubblicazione nuova parola\n");
-            while (i.hasNext()) {
-                Utente u = i.next();
-                try {       
-                    if(u.isPlaying() && !u.winLastGame()) u.resetGamePlayed(translated);
-                    else u.resetGamePlayed("");
-                } catch (RemoteException e) {
-                    e.printStackTrace();
-                    break;
-                }
+    public void changeWord(long end) {
+
+        /** La parola e la sua traduzione sono state preparate durante il round precedente */
+        this.log.warning(Thread.currentThread().getName() + " Pubblicazione nuova parola\n");
+        Random r = new Random();
+        if(this.nextWord == null) {
+            this.nextWord = words.random(r);
+            this.nextTranslation = this.translator.prefetch(this.nextWord);
+        }
+        String secretWord = this.nextWord;
+        String translated = this.translator.await(secretWord, this.nextTranslation);
+        this.nextWord = words.random(r);
+        this.nextTranslation = this.translator.prefetch(this.nextWord);
+
+        /** Preparo il nuovo round e lo pubblico con un'unica scrittura: le operazioni in corso terminano sul round letto */
+        long now = System.currentTimeMillis();
+        GameRound next = new GameRound(this.totalWords + 1, secretWord, translated, now, end);
+        logFeedbackCache();
+        this.feedbackCache.newRound(next.scorer);
+        this.current.set(next);
+        this.totalWords++;
+        this.log.warning(Thread.currentThread().getName() + "Parola aggiornata (Originale: " + secretWord + " - Tradotta: " + translated + ")\n");
+
+        /** Registro il nuovo round; il journal, se troppo grande, viene compattato in uno snapshot (con le modifiche ferme) */
+        long seq = recordChange(Journal.ROUND, "", Integer.toString(this.totalWords));
+        if(this.journal != null) {
+            persist(seq);
+            this.changesLock.writeLock().lock();
+            try {
+                if(this.journal.size() > this.journalCheckpointBytes) checkpoint();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                this.changesLock.writeLock().unlock();
             }
-            Random r = new Random();
-            secretWord = words.get(r.nextInt(0,words.size()));
-            translated = httpRequest();
-            this.totalWords++;
-            this.log.warning(Thread.currentThread().getName() + "Parola aggiornata (Originale: " + secretWord + " - Tradotta: " + translated + ")\n");
-            updatePlaces();
         }
+        updatePlaces(null);
     }
 
     /**
@@ -350,21 +710,52 @@ public class UsersDatabase {
 
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
-        synchronized(database) {
-            if(this.database.get(username) != null) {
-                return 1;
+
+        /** Archivio fuori heap: l'utente viene scritto direttamente nel suo slot */
+        if(this.store != null) {
+            int res;
+            this.changesLock.readLock().lock();
+            try {
+                res = this.store.register(username, password);
+            } finally {
+                this.changesLock.readLock().unlock();
+            }
+            if(res != 0) return res;
+            this.classificaLock.lock();
+            try {
+                this.classifica.update(new Utente(username, password));
+            } finally {
+                this.classificaLock.unlock();
             }
+            return 0;
+        }
 
-            /** Creo utente da registrare */
-            Utente u = new Utente(username, password);
-            this.database.put(username, u);
+        /** Creo utente da registrare */
+        Utente u = new Utente(username, password);
+        long seq;
+        this.changesLock.readLock().lock();
+        try {
+            u.userLock().lock();
             try {
-                backup.updateUsers(this);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return -1;
+                if(this.database.putIfAbsent(username, u) != null) {
+                    return 1;
+                }
+                seq = recordChange(Journal.REGISTER, username, password);
+            } finally {
+                u.userLock().unlock();
             }
-            this.classifica.add(u);
+            if(!persist(seq)) return -1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            this.changesLock.readLock().unlock();
+        }
+        this.classificaLock.lock();
+        try {
+            this.classifica.update(u);
+        } finally {
+            this.classificaLock.unlock();
         }
 
         return 0;
@@ -389,17 +780,22 @@ public class UsersDatabase {
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
 
+        /** Archivio fuori heap: verifico la password sullo slot e carico l'utente solo se non e' gia' online */
+        if(this.store != null) {
+            int slot = this.store.find(username);
+            if(slot == -1) return 1;
+            if(!this.store.checkPassword(slot, password)) return 2;
+            if(this.online.containsKey(username)) return 3;
+            return (this.online.putIfAbsent(username, this.store.load(slot, password)) != null) ? 3 : 0;
+        }
+
         /** Controllo l'esistenza dell'utente */
         Utente u;
-        synchronized(this.database) {
-            if((u = this.database.get(username)) == null) return 1;
-        
-            if(!u.checkUserPsw(password)) return 2;
-            if(this.online.containsKey(username)) return 3;
-            if(this.online.put(username, u) != null) return -1;
+        if((u = this.database.get(username)) == null) return 1;
+        if(!u.checkUserPsw(password)) return 2;
+        if(this.online.putIfAbsent(username, u) != null) return 3;
 
-            return 0;
-        }
+        return 0;
     }
 
     /**
@@ -417,12 +813,15 @@ public class UsersDatabase {
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
 
         /** Disconnetto l'utente */
-        synchronized(database) {
-            Utente u = this.online.get(username);
-            if(u == null) return;
-            if(!u.checkUserPsw(password)) return;
+        Utente u = onlineUser(username, password);
+        if(u == null) return;
+        u.userLock().lock();
+        try {
             u.logout();
-            this.online.remove(username);
+            this.online.remove(username, u);
+            this.notifier.unsubscribe(username);
+        } finally {
+            u.userLock().unlock();
         }
     }
 
@@ -440,18 +839,16 @@ public class UsersDatabase {
         
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
-        synchronized(database) {
-            if((online.get(username) == null) || (!online.get(username).checkUserPsw(password))) return null;
 
-            /** Recupero i suggerimenti dell'ultimo gioco dell'utente */
-            Utente u;
-            if((u = this.online.get(username)) == null) return null;
-            if(!u.checkUserPsw(password)) return null;
+        /** Recupero i suggerimenti dell'ultimo gioco dell'utente */
+        Utente u = onlineUser(username, password);
+        if(u == null) return null;
+        u.userLock().lock();
+        try {
             return u.lastGameAttempts();
+        } finally {
+            u.userLock().unlock();
         }
-
-        
-
     }
 
     /**
@@ -474,82 +871,90 @@ public class UsersDatabase {
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
 
         /** L'utente partecipa al gioco */
-        synchronized(database) {
-            Utente u;
+        int res;
+        long seq = 0;
+        Utente u;
+        this.changesLock.readLock().lock();
+        try {
             if((u = this.online.get(username)) == null) return 1;
-            if(u.isPlaying() && u.winLastGame()) return 2;
-            if(u.isPlaying()) return 3;
-            
-            int res;
+            u.userLock().lock();
             try {
-                res = u.addNewGamePlayed(secretWord);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return 1;
+                GameRound r = this.current.get();
+                u.settleRound(r.id);
+                if(u.isPlaying() && u.winLastGame()) return 2;
+                if(u.isPlaying()) return 3;
+                
+                try {
+                    res = u.addNewGamePlayed(r.secretWord);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return 1;
+                }
+                u.joinRound(r.id, r.translated);
+                if(res == 0) seq = recordChange(Journal.PLAY, username, r.secretWord);
+            } finally {
+                u.userLock().unlock();
             }
-            this.backup.updateUsers(this);
-            updatePlaces();
-
-            return res;
+            persist(seq);
+        } finally {
+            this.changesLock.readLock().unlock();
         }
-        
-        
+        updatePlaces(u);
+
+        return res;
     }
 
     public String sendGuessedWord(String username, String password, String gw) {
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
         StringBuilder s = new StringBuilder();
-        synchronized(database) {
+        long seq;
+        Utente u;
+        this.changesLock.readLock().lock();
+        try {
             
-            if((online.get(username) == null) || (!online.get(username).checkUserPsw(password))) return null;
-            String wt = online.get(username).alertEndGame();
-            if(!wt.equals("")) return "timeout_" + wt;
-            if(!online.get(username).isPlaying()) return "notAllow";
-            if(online.get(username).winLastGame()) return "justWin";
-            if(online.get(username).numAttempts() == 12) return "maxAtt_" + translated;
-
-            String save = secretWord;
-            if(!words.contains(gw)) return "notFound";
-            if(gw.equals(secretWord)) {
-                s.append("++++++++++");
-                try {
-                    online.get(username).gameWin();
-                } catch (StorageUserException e) {
-                    e.printStackTrace();
-                    return null;
-                }
-                online.get(username).addAttempt(s.toString());
-                this.backup.updateUsers(this);
-                updatePlaces();
-                return "win_" + translated;
-                
-            } else {
-                for (int i = 0; i < gw.length(); i++) {
-                    System.out.println(i + "------" + gw + "-----" + secretWord);
-                    System.out.println("--->>>>>> " + save);
-                    if(save.charAt(i) == gw.charAt(i)) {
-                        char[] edit = save.toCharArray();
-                        edit[i] = '-';
-                        save = new String(edit);
-                        s.append("+");
-                    } else if(save.indexOf(gw.charAt(i)) == -1) {
-                        s.append("X");
-                    } else {
-                        char[] edit = save.toCharArray();
-                        int ind = save.indexOf(gw.charAt(i));
-                        edit[ind] = '-';
-                        save = new String(edit);
-                        s.append("?");
+            u = onlineUser(username, password);
+            if(u == null) return null;
+            u.userLock().lock();
+            try {
+                GameRound r = this.current.get();
+                u.settleRound(r.id);
+                String wt = u.alertEndGame();
+                if(!wt.equals("")) return "timeout_" + wt;
+                if(!u.isPlaying()) return "notAllow";
+                if(u.winLastGame()) return "justWin";
+                if(u.numAttempts() == 12) return "maxAtt_" + r.translated;
+
+                if(!words.contains(gw)) return "notFound";
+                int code = this.feedbackCache.score(r.scorer, gw);
+                if(code == -1) return null;
+                if(gw.equals(r.secretWord)) {
+                    s.append("++++++++++");
+                    try {
+                        u.gameWin();
+                    } catch (StorageUserException e) {
+                        e.printStackTrace();
+                        return null;
                     }
+                    recordChange(Journal.WIN, username, "");
+                    u.addAttempt(s.toString());
+                    seq = recordChange(Journal.ATTEMPT, username, s.toString());
+                    s = new StringBuilder("win_" + r.translated);
+                    
+                } else {
+                    FeedbackScorer.appendTo(code, s);
+                    u.addAttempt(s.toString());
+                    seq = recordChange(Journal.ATTEMPT, username, s.toString());
                 }
-                
+            } finally {
+                u.userLock().unlock();
             }
             
-            online.get(username).addAttempt(s.toString());
-            this.backup.updateUsers(this);
-            updatePlaces();
+            persist(seq);
+        } finally {
+            this.changesLock.readLock().unlock();
         }
+        updatePlaces(u);
         
         return s.toString();
     }
@@ -558,12 +963,61 @@ public class UsersDatabase {
 
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
-        synchronized(database) {
-            if((online.get(username) == null) || (!online.get(username).checkUserPsw(password))) return null;
-            return this.online.get(username).toString();
+        Utente u = onlineUser(username, password);
+        if(u == null) return null;
+        String statistics;
+        u.userLock().lock();
+        try {
+            statistics = u.toString();
+        } finally {
+            u.userLock().unlock();
         }
+        return statistics + "Posizione in classifica: " + userRank(username) + "\n";
+    }
 
+    /**
+     * 
+     * @fun                     giveFeedbackCache
+     * @brief                   Restituisce la cache dei suggerimenti (contatori hit/miss per il dimensionamento)
+     * @return                  Cache dei suggerimenti
+     * 
+     */
+    public FeedbackCache giveFeedbackCache() {
+        return this.feedbackCache;
+    }
+
+    /**
+     * 
+     * @fun                     userRank
+     * @brief                   Posizione in classifica di un utente
+     * @param username          Username utente
+     * @return                  Posizione (a partire da 1), -1 se l'utente non e' registrato
+     * 
+     */
+    public int userRank(String username) {
+        this.classificaLock.lock();
+        try {
+            return this.classifica.rankOf(username);
+        } finally {
+            this.classificaLock.unlock();
+        }
+    }
 
+    /**
+     * 
+     * @fun                     topUsers
+     * @brief                   Primi k utenti della classifica
+     * @param k                 Numero di posizioni richieste
+     * @return                  Username dei primi k utenti, in ordine
+     * 
+     */
+    public List<String> topUsers(int k) {
+        this.classificaLock.lock();
+        try {
+            return this.classifica.top(k);
+        } finally {
+            this.classificaLock.unlock();
+        }
     }
 
     public void alertClientService(String username, String password, ServerNotify sn) throws IllegalAccessException {
@@ -571,10 +1025,9 @@ public class UsersDatabase {
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalArgumentException();
 
-        synchronized(database) {
-            if((this.online.get(username) == null) || (!this.online.get(username).checkUserPsw(password))) throw new IllegalAccessError();
-            this.online.get(username).setServerNotify(sn);
-        }
+        Utente u = onlineUser(username, password);
+        if(u == null) throw new IllegalAccessError();
+        this.notifier.subscribe(username, sn);
     }
 
     public void disableClientAlert(String username, String password) throws IllegalAccessException, NoSuchObjectException {
@@ -582,12 +1035,10 @@ public class UsersDatabase {
         /** Controllo argomenti */
         if(username.equals("") || password.equals("")) throw new IllegalAccessException();
 
-        synchronized(database) {
-            if((this.database.get(username) == null) || (!this.database.get(username).checkUserPsw(password))) throw new IllegalAccessError();
-            this.database.get(username).unsetServerNotify();
-        }
+        Utente u = (this.store != null) ? this.online.get(username) : this.database.get(username);
+        if((u == null) && (this.store != null)) return;
+        if((u == null) || (!u.checkUserPsw(password))) throw new IllegalAccessError();
+        this.notifier.unsubscribe(username);
     }
 
 }
-
-
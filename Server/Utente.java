@@ -1,13 +1,21 @@
 package Server;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
-import java.rmi.RemoteException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
-import Interfaces.ServerNotify;
 import Server.Exception.StorageUserException;
 
 /**
@@ -22,25 +30,57 @@ public class Utente implements Serializable, Comparable<Utente> {
     
     /** Variabili globali */
     private static final int MAX_ATTEMPTS = 12;
+    public static final int SLOT_STATS_BYTES = 128;         // Byte scritti da writeSlot nell'archivio fuori heap
 
     /** Attributi Utente */
-    @JsonIgnore
-    private ServerNotify clientSN;                          // Comunicazione tramite RMI al client
     private String username;                                // Username dell'utente
     private String password;                                // Password utente
     private int gamePlayed;                                 // Numero di partite giocate
-    private LinkedList<Boolean> gamesWon;                   // Lista che indica i game vinti dall'utente
+    @JsonIgnore
+    private long[] gamesWon;                                // Bit i-esimo a 1 se l'utente ha vinto il game i-esimo
+    @JsonIgnore
+    private int gamesWonSize;
     private int nGamesWin;                                  // Numero di game vinti
     private int successGameRow;                             // Ultima fila di risultati utili consecutivi
     private int bestSuccessGameRow;                         // Migliore file di risultati utili consecutivi
-    private LinkedList<ArrayList<String>> attemptString;    // Lista di tutti i tentativi per ogni partita giocata
-    private LinkedList<String> wordPlayed;
+    @JsonIgnore
+    private int[] attemptCodes;                             // Suggerimenti di tutte le partite, impacchettati (vedi FeedbackScorer)
+    @JsonIgnore
+    private int attemptCodesSize;
+    @JsonIgnore
+    private int[] attemptStart;                             // Indice in attemptCodes del primo tentativo di ogni partita
+    @JsonIgnore
+    private int attemptGames;
+    @JsonIgnore
+    private HashMap<Integer, String> otherAttempts;         // Suggerimenti non impacchettabili, per indice in attemptCodes
+    @JsonIgnore
+    private int[] wordPlayed;                               // Indici nel dizionario delle parole giocate (-1 se fuori dizionario)
+    @JsonIgnore
+    private int wordPlayedSize;
+    @JsonIgnore
+    private HashMap<Integer, String> otherWords;            // Parole giocate fuori dizionario, per posizione
+    @JsonIgnore
+    private long historyTail;                               // Ultimo record dello storico su disco (modalita' a livelli)
+    @JsonIgnore
+    private int spilledGames;                               // Partite spostate su disco (escluse dagli array in memoria)
     private int guessDistribution[];                        // Distribuzione dei tentativi impiegati per vincere i vari game
     @JsonIgnore
     private boolean playConcurrentGame;                     // Flag che indica se l'utente stava partecipando al gioco corrente o meno
     @JsonIgnore
     private String oldWord;                                 // Ultima parola secreta che l'utente stava cercando di indovinare
+    @JsonIgnore
+    private long playedRound;                               // Round a cui l'utente ha partecipato per ultimo
+    @JsonIgnore
+    private String playedTranslation;                       // Traduzione della parola di quel round
+    @JsonIgnore
+    private ReentrantLock lock;                             // Lock delle operazioni di gioco del singolo utente
+    @JsonIgnore
+    private long scoreSum;                                  // Somma pesata dei tentativi (perse pesano MAX_ATTEMPTS+1)
+    @JsonIgnore
+    private double aws;                                     // Punteggio aws corrente: scoreSum / gamePlayed
     private static final long serialVersionUID = 1L;        // Versione serializzazione in formato json di un utente
+    private static volatile WordsDictionary dictionary;     // Dizionario usato per gli indici delle parole giocate
+    private static volatile HistoryStore history;           // Archivio delle partite concluse, null se tutto in memoria
 
     /**
      * 
@@ -53,7 +93,14 @@ public class Utente implements Serializable, Comparable<Utente> {
         /** Imposto i valori degli attributi JsonIgnore */
         this.playConcurrentGame = false;
         this.oldWord = "";
-        this.clientSN = null;
+        this.lock = new ReentrantLock();
+        this.scoreSum = 0;
+        this.aws = Double.NaN;
+        this.gamesWon = new long[1];
+        this.attemptCodes = new int[4];
+        this.attemptStart = new int[4];
+        this.wordPlayed = new int[4];
+        this.historyTail = HistoryStore.NONE;
     }
 
     /**
@@ -74,19 +121,204 @@ public class Utente implements Serializable, Comparable<Utente> {
         this.username = username;
         this.password = password;
         this.gamePlayed = 0;
-        this.gamesWon = new LinkedList<>();
+        this.gamesWon = new long[1];
         this.successGameRow = 0;
         this.nGamesWin = 0;
         this.bestSuccessGameRow = 0;
-        this.attemptString = new LinkedList<>();
+        this.attemptCodes = new int[4];
+        this.attemptStart = new int[4];
         this.playConcurrentGame = false;
         this.guessDistribution = new int[12];
         this.oldWord = "";
-        this.wordPlayed = new LinkedList<>();
+        this.wordPlayed = new int[4];
         for (int i = 0; i < MAX_ATTEMPTS; i++) {
             this.guessDistribution[i] = 0;
         }
-        this.clientSN = null;
+        this.lock = new ReentrantLock();
+        this.scoreSum = 0;
+        this.aws = Double.NaN;
+        this.historyTail = HistoryStore.NONE;
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    private static int[] grow(int[] a, int size) {
+        return (size < a.length) ? a : Arrays.copyOf(a, 2*a.length);
+    }
+
+    /**
+     *
+     * @fun                 addWon
+     * @brief               Aggiunge in coda l'esito di un game
+     *
+     */
+    private void addWon(boolean won) {
+        if((this.gamesWonSize >> 6) == this.gamesWon.length) this.gamesWon = Arrays.copyOf(this.gamesWon, 2*this.gamesWon.length);
+        if(won) this.gamesWon[this.gamesWonSize >> 6] |= 1L << this.gamesWonSize;
+        this.gamesWonSize++;
+    }
+
+    private boolean isWon(int i) {
+        return (this.gamesWon[i >> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     *
+     * @fun                 addWordPlayed
+     * @brief               Aggiunge in coda una parola giocata, come indice del dizionario se possibile
+     *
+     */
+    private void addWordPlayed(String w) {
+        WordsDictionary d = dictionary;
+        int index = (d == null) ? -1 : d.indexOf(w);
+        this.wordPlayed = grow(this.wordPlayed, this.wordPlayedSize);
+        if(index == -1) {
+            if(this.otherWords == null) this.otherWords = new HashMap<>();
+            this.otherWords.put(this.wordPlayedSize, w);
+        }
+        this.wordPlayed[this.wordPlayedSize++] = index;
+    }
+
+    private String wordPlayedAt(int i) {
+        int index = this.wordPlayed[i];
+        return (index == -1) ? this.otherWords.get(i) : dictionary.get(index);
+    }
+
+    /**
+     *
+     * @fun                 addAttemptGame
+     * @brief               Apre la lista di tentativi di un nuovo game
+     *
+     */
+    private void addAttemptGame() {
+        this.attemptStart = grow(this.attemptStart, this.attemptGames);
+        this.attemptStart[this.attemptGames++] = this.attemptCodesSize;
+    }
+
+    /**
+     *
+     * @fun                 addAttemptCode
+     * @brief               Aggiunge un suggerimento all'ultimo game
+     * @param code          Suggerimento impacchettato, -1 se non impacchettabile
+     * @param attempt       Suggerimento per esteso (usato solo se code e' -1)
+     *
+     */
+    private void addAttemptCode(int code, String attempt) {
+        this.attemptCodes = grow(this.attemptCodes, this.attemptCodesSize);
+        if(code == -1) {
+            if(this.otherAttempts == null) this.otherAttempts = new HashMap<>();
+            this.otherAttempts.put(this.attemptCodesSize, attempt);
+        }
+        this.attemptCodes[this.attemptCodesSize++] = code;
+    }
+
+    private String attemptAt(int i) {
+        int code = this.attemptCodes[i];
+        return (code == -1) ? this.otherAttempts.get(i) : FeedbackScorer.decode(code);
+    }
+
+    /**
+     *
+     * @fun                 attemptsOf
+     * @brief               Numero di tentativi del game g
+     *
+     */
+    private int attemptsOf(int g) {
+        int end = (g == this.attemptGames - 1) ? this.attemptCodesSize : this.attemptStart[g+1];
+        return end - this.attemptStart[g];
+    }
+
+    private ArrayList<String> attemptsAt(int g) {
+        ArrayList<String> l = new ArrayList<>(attemptsOf(g));
+        for (int i = this.attemptStart[g]; i < this.attemptStart[g] + attemptsOf(g); i++) {
+            l.add(attemptAt(i));
+        }
+        return l;
+    }
+
+    /**
+     *
+     * @fun                 spillHistory
+     * @brief               Modalita' a livelli: sposta su disco tutte le partite tranne l'ultima. In caso di errore
+     *                      le partite restano in memoria
+     *
+     */
+    private void spillHistory() {
+        HistoryStore h = history;
+        int n = this.gamesWonSize;
+        if(h == null || n < 2 || this.wordPlayedSize != n || this.attemptGames != n) return;
+
+        long tail = this.historyTail;
+        try {
+            for (int g = 0; g < n-1; g++) {
+                tail = h.append(tail, isWon(g), wordPlayedAt(g), attemptsAt(g));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        /** In memoria resta solo l'ultima partita */
+        boolean won = isWon(n-1);
+        String word = wordPlayedAt(n-1);
+        ArrayList<String> attempts = attemptsAt(n-1);
+        this.gamesWon = new long[1];
+        this.gamesWonSize = 0;
+        this.wordPlayed = new int[1];
+        this.wordPlayedSize = 0;
+        this.otherWords = null;
+        this.attemptCodes = new int[Math.max(attempts.size(), 1)];
+        this.attemptCodesSize = 0;
+        this.attemptStart = new int[1];
+        this.attemptGames = 0;
+        this.otherAttempts = null;
+        addWon(won);
+        addWordPlayed(word);
+        addAttemptGame();
+        for (String a : attempts) {
+            addAttemptCode(FeedbackScorer.encode(a), a);
+        }
+        this.historyTail = tail;
+        this.spilledGames += n-1;
+    }
+
+    /**
+     *
+     * @fun                 loadHistory
+     * @brief               Legge le partite spostate su disco
+     * @return              Partite in ordine cronologico (lista vuota se non ce ne sono)
+     * @throws IOException
+     *
+     */
+    private ArrayList<HistoryStore.Game> loadHistory() throws IOException {
+        if(this.historyTail == HistoryStore.NONE) return new ArrayList<>();
+        return history.load(this.historyTail);
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                         useDictionary
+     * @brief                       Imposta il dizionario con cui le parole giocate sono memorizzate come indici.
+     *                              Va impostato una sola volta, prima di creare o ripristinare gli utenti
+     * @param d                     Dizionario delle parole di gioco
+     *
+     */
+    public static void useDictionary(WordsDictionary d) {
+        dictionary = d;
+    }
+
+    /**
+     *
+     * @fun                         useHistoryStore
+     * @brief                       Attiva la modalita' a livelli: le partite concluse vengono spostate nell'archivio su
+     *                              disco. Va impostato una sola volta, prima di creare o ripristinare gli utenti
+     * @param h                     Archivio delle partite concluse
+     *
+     */
+    public static void useHistoryStore(HistoryStore h) {
+        history = h;
     }
 
     /**
@@ -100,6 +332,28 @@ public class Utente implements Serializable, Comparable<Utente> {
         return username;
     }
 
+    /**
+     *
+     * @fun                         givePassword
+     * @brief                       Restituisce la password dell'utente (usata per importarlo nell'archivio fuori heap)
+     * @return                      Password dell'utente
+     *
+     */
+    String givePassword() {
+        return this.password;
+    }
+
+    /**
+     * 
+     * @fun                         userLock
+     * @brief                       Restituisce il lock che protegge lo stato di gioco dell'utente
+     * @return                      Lock dell'utente
+     * 
+     */
+    public ReentrantLock userLock() {
+        return this.lock;
+    }
+
     /**
      *
      * @fun                 addAttempt
@@ -113,9 +367,9 @@ public class Utente implements Serializable, Comparable<Utente> {
 
         /** Controllo argomenti */
         if(attempt.equals("")) throw new IllegalArgumentException();
-        if((this.attemptString.size() == 0) || (this.attemptString.getLast().size() == MAX_ATTEMPTS)) return false;
+        if((this.attemptGames == 0) || (attemptsOf(this.attemptGames-1) == MAX_ATTEMPTS)) return false;
         
-        this.attemptString.getLast().add(attempt);
+        addAttemptCode(FeedbackScorer.encode(attempt), attempt);
 
         return true;
 
@@ -129,16 +383,20 @@ public class Utente implements Serializable, Comparable<Utente> {
      * 
      */
     public int addNewGamePlayed(String wordPlay) {
-        if(this.wordPlayed == null || wordPlay == null) throw new NullPointerException();
-        boolean justPlayed = ((this.wordPlayed != null) && (this.wordPlayed.size() != 0)) ? (this.wordPlayed.getLast().equals(wordPlay)) : false;        
-        System.out.println(justPlayed);
+        if(wordPlay == null) throw new NullPointerException();
+        boolean justPlayed = (this.wordPlayedSize != 0) ? (wordPlayedAt(this.wordPlayedSize-1).equals(wordPlay)) : false;        
         this.playConcurrentGame = true;
-        if((this.wordPlayed.size() != 0) && justPlayed && (this.gamesWon.getLast())) return 2;
-        if(!justPlayed) this.gamePlayed++;
-        if(!justPlayed) this.attemptString.add(new ArrayList<>());
-        if((!justPlayed) && ((this.gamesWon.size() == 0) || (!this.gamesWon.getLast()))) this.successGameRow = 0;
-        if(!justPlayed) this.gamesWon.add(false);
-        if(!justPlayed) this.wordPlayed.add(wordPlay);
+        if((this.wordPlayedSize != 0) && justPlayed && (isWon(this.gamesWonSize-1))) return 2;
+        if(!justPlayed) {
+            this.gamePlayed++;
+            this.scoreSum += MAX_ATTEMPTS+1;
+            this.aws = (double) this.scoreSum / this.gamePlayed;
+        }
+        if(!justPlayed) addAttemptGame();
+        if((!justPlayed) && ((this.gamesWonSize == 0) || (!isWon(this.gamesWonSize-1)))) this.successGameRow = 0;
+        if(!justPlayed) addWon(false);
+        if(!justPlayed) addWordPlayed(wordPlay);
+        if(!justPlayed) spillHistory();
 
         return (justPlayed) ? 3 : 0;
     }
@@ -153,17 +411,16 @@ public class Utente implements Serializable, Comparable<Utente> {
     public void gameWin() throws StorageUserException {
 
         /** Errore nella struttura dell'utente */
-        this.gamesWon.set(this.gamePlayed-1, true);
+        int last = this.gamePlayed - 1 - this.spilledGames;
+        if(last < 0 || last >= this.gamesWonSize || this.attemptGames == 0) throw new StorageUserException("Storico partite incompleto");
+        this.gamesWon[last >> 6] |= 1L << last;
         this.nGamesWin++;
         this.successGameRow++;
-        int count = 0;
-        if(attemptString.getLast() != null) {
-            for (String attempt : attemptString.getLast()) {
-                count++;
-            }
-        }
+        int count = attemptsOf(this.attemptGames-1);
         
         this.guessDistribution[count]++;
+        this.scoreSum += (count+1) - (MAX_ATTEMPTS+1);
+        this.aws = (double) this.scoreSum / this.gamePlayed;
 
         this.bestSuccessGameRow = (this.successGameRow > this.bestSuccessGameRow) ? this.successGameRow : this.bestSuccessGameRow;
     }
@@ -177,25 +434,382 @@ public class Utente implements Serializable, Comparable<Utente> {
      * 
      */
     public ArrayList<String> lastGameAttempts() {
-        ArrayList<String> tmp = null;
-        if(this.attemptString.size() != 0) tmp = new ArrayList<>(this.attemptString.getLast());
-        return tmp;
+        if(this.attemptGames == 0) return null;
+        return attemptsAt(this.attemptGames-1);
     }
 
     /**
      * 
      * @fun                 awsUtente
-     * @brief               Calcola il punto aws per il singolo utente
+     * @brief               Restituisce il punto aws per il singolo utente, mantenuto ad ogni partita
      * @return              Il punteggio aws dell'utente in questione
      * 
      */
     public double awsUtente() {
-        double score = 0;
+        return this.aws;
+    }
+
+    /**
+     * 
+     * @fun                 rebuildScore
+     * @brief               Ricalcola il punteggio aws dalle statistiche (da usare dopo il ripristino da backup)
+     * 
+     */
+    public void rebuildScore() {
+        long score = 0;
         for (int i = 0; i < guessDistribution.length; i++) {
             score += (i+1)*this.guessDistribution[i];
         }
         score += (MAX_ATTEMPTS+1)*(this.gamePlayed-this.nGamesWin);
-        return (score / gamePlayed);
+        this.scoreSum = score;
+        this.aws = (double) score / gamePlayed;
+    }
+
+    /**
+     *
+     * @fun                 snapshotCopy
+     * @brief               Copia indipendente dei dati persistenti dell'utente (da chiamare con il lock dell'utente):
+     *                      lo snapshot in background serializza la copia senza bloccare le partite in corso
+     * @return              Copia dell'utente
+     *
+     */
+    public Utente snapshotCopy() {
+        Utente c = new Utente();
+        c.username = this.username;
+        c.password = this.password;
+        c.gamePlayed = this.gamePlayed;
+        c.gamesWon = Arrays.copyOf(this.gamesWon, (this.gamesWonSize >> 6) + 1);
+        c.gamesWonSize = this.gamesWonSize;
+        c.nGamesWin = this.nGamesWin;
+        c.successGameRow = this.successGameRow;
+        c.bestSuccessGameRow = this.bestSuccessGameRow;
+        c.attemptCodes = Arrays.copyOf(this.attemptCodes, Math.max(this.attemptCodesSize, 1));
+        c.attemptCodesSize = this.attemptCodesSize;
+        c.attemptStart = Arrays.copyOf(this.attemptStart, Math.max(this.attemptGames, 1));
+        c.attemptGames = this.attemptGames;
+        if(this.otherAttempts != null) c.otherAttempts = new HashMap<>(this.otherAttempts);
+        c.wordPlayed = Arrays.copyOf(this.wordPlayed, Math.max(this.wordPlayedSize, 1));
+        c.wordPlayedSize = this.wordPlayedSize;
+        if(this.otherWords != null) c.otherWords = new HashMap<>(this.otherWords);
+        c.historyTail = this.historyTail;
+        c.spilledGames = this.spilledGames;
+        c.guessDistribution = this.guessDistribution.clone();
+        return c;
+    }
+
+    /**
+     *
+     * @fun                 writeJson
+     * @brief               Scrive l'utente come oggetto json (stessi campi della serializzazione Jackson)
+     * @param g             Generatore json su cui scrivere
+     * @throws IOException
+     *
+     */
+    public void writeJson(JsonGenerator g) throws IOException {
+        ArrayList<HistoryStore.Game> old = loadHistory();
+        g.writeStartObject();
+        g.writeStringField("username", this.username);
+        g.writeStringField("password", this.password);
+        g.writeNumberField("gamePlayed", this.gamePlayed);
+        g.writeArrayFieldStart("gamesWon");
+        for (HistoryStore.Game o : old) {
+            g.writeBoolean(o.won);
+        }
+        for (int i = 0; i < this.gamesWonSize; i++) {
+            g.writeBoolean(isWon(i));
+        }
+        g.writeEndArray();
+        g.writeNumberField("nGamesWin", this.nGamesWin);
+        g.writeNumberField("successGameRow", this.successGameRow);
+        g.writeNumberField("bestSuccessGameRow", this.bestSuccessGameRow);
+        g.writeArrayFieldStart("attemptString");
+        for (HistoryStore.Game o : old) {
+            g.writeStartArray();
+            for (String s : o.attempts) {
+                g.writeString(s);
+            }
+            g.writeEndArray();
+        }
+        for (int j = 0; j < this.attemptGames; j++) {
+            g.writeStartArray();
+            for (int i = this.attemptStart[j]; i < this.attemptStart[j] + attemptsOf(j); i++) {
+                g.writeString(attemptAt(i));
+            }
+            g.writeEndArray();
+        }
+        g.writeEndArray();
+        g.writeArrayFieldStart("wordPlayed");
+        for (HistoryStore.Game o : old) {
+            g.writeString(o.word);
+        }
+        for (int i = 0; i < this.wordPlayedSize; i++) {
+            g.writeString(wordPlayedAt(i));
+        }
+        g.writeEndArray();
+        g.writeFieldName("guessDistribution");
+        g.writeArray(this.guessDistribution, 0, this.guessDistribution.length);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @fun                 readJson
+     * @brief               Legge un utente dall'oggetto json corrente del parser (i campi sconosciuti sono ignorati)
+     * @param p             Parser posizionato sull'inizio dell'oggetto
+     * @return              L'utente letto
+     * @throws IOException
+     *
+     */
+    public static Utente readJson(JsonParser p) throws IOException {
+        if(p.currentToken() != JsonToken.START_OBJECT) throw new JsonParseException(p, "Utente: atteso un oggetto");
+        Utente u = new Utente();
+        u.guessDistribution = new int[MAX_ATTEMPTS];
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken t = p.nextToken();
+            if(t == JsonToken.VALUE_NULL) continue;
+            switch (field) {
+                case "username": u.username = p.getText(); break;
+                case "password": u.password = p.getText(); break;
+                case "gamePlayed": u.gamePlayed = p.getIntValue(); break;
+                case "nGamesWin": u.nGamesWin = p.getIntValue(); break;
+                case "successGameRow": u.successGameRow = p.getIntValue(); break;
+                case "bestSuccessGameRow": u.bestSuccessGameRow = p.getIntValue(); break;
+
+                case "gamesWon":
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        u.addWon(p.getBooleanValue());
+                    }
+                break;
+
+                case "attemptString":
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        u.addAttemptGame();
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            String a = p.getText();
+                            u.addAttemptCode(FeedbackScorer.encode(a), a);
+                        }
+                    }
+                break;
+
+                case "wordPlayed":
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        u.addWordPlayed(p.getText());
+                    }
+                break;
+
+                case "guessDistribution":
+                    ArrayList<Integer> d = new ArrayList<>(MAX_ATTEMPTS);
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        d.add(p.getIntValue());
+                    }
+                    u.guessDistribution = new int[d.size()];
+                    for (int i = 0; i < d.size(); i++) {
+                        u.guessDistribution[i] = d.get(i);
+                    }
+                break;
+
+                default:
+                    p.skipChildren();
+            }
+        }
+        u.spillHistory();
+        return u;
+    }
+
+    /**
+     *
+     * @fun                 writeBinary
+     * @brief               Scrive l'utente in formato binario compatto: vittorie a un bit per partita, parole giocate
+     *                      come indici del dizionario, suggerimenti come codici a 2 bit per lettera. Parole e
+     *                      suggerimenti non rappresentabili sono scritti per esteso dopo il marcatore -1
+     * @param out           Stream di destinazione
+     * @param words         Dizionario delle parole di gioco
+     * @throws IOException
+     *
+     */
+    public void writeBinary(DataOutput out, WordsDictionary words) throws IOException {
+        out.writeUTF(this.username);
+        out.writeUTF(this.password);
+        out.writeInt(this.gamePlayed);
+        out.writeInt(this.nGamesWin);
+        out.writeInt(this.successGameRow);
+        out.writeInt(this.bestSuccessGameRow);
+
+        ArrayList<HistoryStore.Game> old = loadHistory();
+        int n = old.size() + this.gamesWonSize;
+        out.writeInt(n);
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            boolean won = (i < old.size()) ? old.get(i).won : isWon(i - old.size());
+            if(won) bits |= 1 << (i % 8);
+            if(i % 8 == 7 || i == n-1) {
+                out.writeByte(bits);
+                bits = 0;
+            }
+        }
+
+        out.writeByte(this.guessDistribution.length);
+        for (int d : this.guessDistribution) {
+            out.writeInt(d);
+        }
+
+        out.writeInt(old.size() + this.wordPlayedSize);
+        for (HistoryStore.Game o : old) {
+            int i = words.indexOf(o.word);
+            out.writeInt(i);
+            if(i == -1) out.writeUTF(o.word);
+        }
+        for (int j = 0; j < this.wordPlayedSize; j++) {
+            int i = (words == dictionary) ? this.wordPlayed[j] : -1;
+            String w = (i == -1) ? wordPlayedAt(j) : null;
+            if(i == -1) i = words.indexOf(w);
+            out.writeInt(i);
+            if(i == -1) out.writeUTF(w);
+        }
+
+        out.writeInt(old.size() + this.attemptGames);
+        for (HistoryStore.Game o : old) {
+            out.writeByte(o.attempts.size());
+            for (String s : o.attempts) {
+                int code = FeedbackScorer.encode(s);
+                out.writeInt(code);
+                if(code == -1) out.writeUTF(s);
+            }
+        }
+        for (int j = 0; j < this.attemptGames; j++) {
+            out.writeByte(attemptsOf(j));
+            for (int i = this.attemptStart[j]; i < this.attemptStart[j] + attemptsOf(j); i++) {
+                out.writeInt(this.attemptCodes[i]);
+                if(this.attemptCodes[i] == -1) out.writeUTF(this.otherAttempts.get(i));
+            }
+        }
+    }
+
+    /**
+     *
+     * @fun                 readBinary
+     * @brief               Legge un utente scritto da writeBinary
+     * @param in            Stream di origine
+     * @param words         Dizionario delle parole di gioco (lo stesso usato in scrittura)
+     * @return              L'utente letto
+     * @throws IOException
+     *
+     */
+    public static Utente readBinary(DataInput in, WordsDictionary words) throws IOException {
+        Utente u = new Utente();
+        u.username = in.readUTF();
+        u.password = in.readUTF();
+        u.gamePlayed = in.readInt();
+        u.nGamesWin = in.readInt();
+        u.successGameRow = in.readInt();
+        u.bestSuccessGameRow = in.readInt();
+
+        int n = in.readInt();
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            if(i % 8 == 0) bits = in.readUnsignedByte();
+            u.addWon((bits & (1 << (i % 8))) != 0);
+        }
+
+        u.guessDistribution = new int[in.readUnsignedByte()];
+        for (int i = 0; i < u.guessDistribution.length; i++) {
+            u.guessDistribution[i] = in.readInt();
+        }
+
+        n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            int index = in.readInt();
+            u.addWordPlayed((index == -1) ? in.readUTF() : words.get(index));
+        }
+
+        n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            int m = in.readUnsignedByte();
+            u.addAttemptGame();
+            for (int j = 0; j < m; j++) {
+                int code = in.readInt();
+                u.addAttemptCode(code, (code == -1) ? in.readUTF() : null);
+            }
+        }
+        u.spillHistory();
+        return u;
+    }
+
+    /**
+     *
+     * @fun                 writeSlot
+     * @brief               Scrive contatori, distribuzione dei tentativi e ultima partita nello slot dell'archivio
+     *                      fuori heap (SLOT_STATS_BYTES byte a partire da base). Lo storico delle partite precedenti
+     *                      non viene salvato; i suggerimenti non impacchettabili sono tralasciati
+     * @param b             Buffer dello slot
+     * @param base          Posizione del blocco delle statistiche
+     *
+     */
+    public void writeSlot(ByteBuffer b, int base) {
+        b.putInt(base, this.gamePlayed);
+        b.putInt(base + 4, this.nGamesWin);
+        b.putInt(base + 8, this.successGameRow);
+        b.putInt(base + 12, this.bestSuccessGameRow);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            b.putInt(base + 16 + 4*i, this.guessDistribution[i]);
+        }
+
+        /** Ultima partita: parola (-2 se nessuna), esito e suggerimenti */
+        int last = base + 16 + 4*MAX_ATTEMPTS;
+        if(this.wordPlayedSize == 0 || this.attemptGames == 0) {
+            b.putInt(last, -2);
+            b.put(last + 5, (byte) 0);
+            return;
+        }
+        b.putInt(last, this.wordPlayed[this.wordPlayedSize-1]);
+        b.put(last + 4, (byte) (winLastGame() ? 1 : 0));
+        int n = 0;
+        for (int i = this.attemptStart[this.attemptGames-1]; i < this.attemptCodesSize; i++) {
+            if(this.attemptCodes[i] != -1) b.putInt(last + 6 + 4*n++, this.attemptCodes[i]);
+        }
+        b.put(last + 5, (byte) n);
+    }
+
+    /**
+     *
+     * @fun                 readSlot
+     * @brief               Ricostruisce un utente da uno slot dell'archivio fuori heap: in memoria ci sono solo i
+     *                      contatori e l'ultima partita
+     * @param b             Buffer dello slot
+     * @param base          Posizione del blocco delle statistiche
+     * @param username      Username dell'utente
+     * @param password      Password dell'utente (gia' verificata dall'archivio)
+     * @return              L'utente letto
+     *
+     */
+    public static Utente readSlot(ByteBuffer b, int base, String username, String password) {
+        Utente u = new Utente();
+        u.username = username;
+        u.password = password;
+        u.gamePlayed = b.getInt(base);
+        u.nGamesWin = b.getInt(base + 4);
+        u.successGameRow = b.getInt(base + 8);
+        u.bestSuccessGameRow = b.getInt(base + 12);
+        u.guessDistribution = new int[MAX_ATTEMPTS];
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            u.guessDistribution[i] = b.getInt(base + 16 + 4*i);
+        }
+
+        int last = base + 16 + 4*MAX_ATTEMPTS;
+        int word = b.getInt(last);
+        if(word != -2 && u.gamePlayed > 0) {
+            u.addWon(b.get(last + 4) == 1);
+            u.addWordPlayed((word == -1) ? "" : dictionary.get(word));
+            u.addAttemptGame();
+            int n = b.get(last + 5);
+            for (int i = 0; i < n; i++) {
+                u.addAttemptCode(b.getInt(last + 6 + 4*i), null);
+            }
+            u.spilledGames = u.gamePlayed - 1;
+        }
+        u.rebuildScore();
+        return u;
     }
 
     /**
@@ -212,14 +826,29 @@ public class Utente implements Serializable, Comparable<Utente> {
 
     /**
      * 
-     * @fun                             resetGamePlayed
-     * @brief                           Resetta il flag che indica che l'utente stava giocando al gioco
-     * @throws RemoteException
+     * @fun                             joinRound
+     * @brief                           Registra il round a cui l'utente sta partecipando
+     * @param round                     Identificativo del round corrente
+     * @param translation               Traduzione della parola del round, restituita allo scadere del tempo
+     * 
+     */
+    public void joinRound(long round, String translation) {
+        this.playedRound = round;
+        this.playedTranslation = translation;
+    }
+
+    /**
+     * 
+     * @fun                             settleRound
+     * @brief                           Chiude in modo pigro la partita di un round gia' terminato: se l'utente stava
+     *                                  giocando a un round diverso da quello corrente resetta il flag di gioco e, se
+     *                                  non aveva vinto, ricorda la parola da restituire con alertEndGame
+     * @param round                     Identificativo del round corrente
      * 
      */
-    public void resetGamePlayed(String oldWord) throws RemoteException {
-        if(playConcurrentGame) {
-            this.oldWord = oldWord;
+    public void settleRound(long round) {
+        if(this.playConcurrentGame && this.playedRound != round) {
+            this.oldWord = winLastGame() ? "" : this.playedTranslation;
             this.playConcurrentGame = false;
         }
     }
@@ -261,32 +890,7 @@ public class Utente implements Serializable, Comparable<Utente> {
      * 
      */
     public boolean winLastGame() {
-        try {
-            return (this.gamesWon != null) ? this.gamesWon.getLast().booleanValue() : false;
-        } catch (NoSuchElementException nsee) {
-            return false;
-        }
-    }
-
-    /**
-     * 
-     * @fun                 setServerNotify
-     * @brief               Imposta il servizio di notifiche ai client
-     * @param sn            Riferimento RMI del client da notificare
-     * 
-     */
-    public void setServerNotify(ServerNotify sn) {
-        this.clientSN = sn;
-    }
-
-    /**
-     * 
-     * @fun         unsetServerNotify
-     * @brief       Cancella riferimento RMI del client collegato come l'utente corrente
-     * 
-     */
-    public void unsetServerNotify() {
-        this.clientSN = null;
+        return (this.gamesWonSize != 0) ? isWon(this.gamesWonSize-1) : false;
     }
 
     /**
@@ -319,7 +923,8 @@ public class Utente implements Serializable, Comparable<Utente> {
      * 
      */
     public int numAttempts() {
-        return this.attemptString.getLast().size();
+        if(this.attemptGames == 0) throw new NoSuchElementException();
+        return attemptsOf(this.attemptGames-1);
     }
 
     /**
@@ -335,15 +940,4 @@ public class Utente implements Serializable, Comparable<Utente> {
         return Double.compare(this.awsUtente(), o.awsUtente()); 
     }
 
-    /**
-     * 
-     * @fun                 giveServerNotify
-     * @brief               Restituisce l'attributo sn
-     * @return              Ritorna sn
-     * 
-     */
-    public ServerNotify giveServerNotify() {
-        return this.clientSN;
-    }
-
 }
@@ -2,6 +2,8 @@ package Server;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
@@ -11,10 +13,17 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -43,12 +52,23 @@ public class WordleServer implements Runnable {
     public static final long timegameDefault = 60;
     public static final String SocialNetworkIP_DEFAULT = "228.5.6.7";
     public static final int SocialNetworkPORT_DEFAULT = 7000;
+    public static final String serverModeDefault = "blocking";
+    public static final int eventLoopsDefault = Runtime.getRuntime().availableProcessors();
+    public static final int nioWorkersDefault = 16;
+    public static final int handlerThreadsDefault = 1024;
+    public static final int acceptBacklogDefault = 128;
 
     /** Attributi classe */
     private int listeningPort;
     private long timegame;
     private String SocialNetworkIP;
     private int SocialNetworkPORT;
+    private String serverMode;
+    private int eventLoops;
+    private int nioWorkers;
+    private int handlerThreads;
+    private int acceptBacklog;
+    private AdmissionControl admission;
     private UsersDatabase users;
     private Authentication auth;
     private Logger log;
@@ -99,6 +119,170 @@ public class WordleServer implements Runnable {
         }
     }
 
+    /**
+     * 
+     * @fun                 newVirtualThreadPool
+     * @brief               Crea un executor che esegue ogni task su un nuovo virtual thread (Java 21+);
+     *                      su JVM precedenti ripiega sul pool di thread di piattaforma
+     * @return              Executor di virtual thread, newCachedThreadPool se non disponibili
+     * 
+     */
+    private ExecutorService newVirtualThreadPool() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warning(Thread.currentThread().getName() + " Virtual thread non disponibili su questa JVM - Uso il pool di thread\n");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * 
+     * @fun                 newHandlerPool
+     * @brief               Crea il pool dei ClientRequest: un thread per client fino a handlerThreads, senza coda;
+     *                      oltre il limite il pool rifiuta il task e il client riceve subito BUSY
+     * @return              Executor limitato
+     * 
+     */
+    private ExecutorService newHandlerPool() {
+        return new ThreadPoolExecutor(0, this.handlerThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+
+    /**
+     * 
+     * @fun                 acceptBlocking
+     * @brief               Accetta le connessioni con ServerSocket bloccante, un task del pool per ogni client
+     * @param pool          Executor su cui eseguire i ClientRequest
+     * 
+     */
+    private void acceptBlocking(ExecutorService pool) {
+
+        /** Attendo richieste di accept */
+        log.config(Thread.currentThread().getName() + " Server avviato correttamente\n");
+        LinkedList<Socket> clients = new LinkedList<>();
+        try (ServerSocket ss = new ServerSocket(listeningPort, acceptBacklog)) {
+            ss.setSoTimeout(2000);
+            while (!Thread.interrupted()) {
+                try {
+                    Socket c;
+                    c = ss.accept();
+
+                    /** Oltre i limiti il client riceve subito BUSY */
+                    InetAddress a = c.getInetAddress();
+                    if(!this.admission.admit(a)) {
+                        this.admission.refuse(c);
+                        continue;
+                    }
+                    ClientRequest cr = new ClientRequest(users, c, this.SocialNetworkIP, this.SocialNetworkPORT, log);
+                    try {
+                        pool.execute(() -> {
+                            try {
+                                cr.run();
+                            } finally {
+                                this.admission.release(a);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        this.admission.rejectPool(a);
+                        this.admission.refuse(c);
+                        continue;
+                    }
+                    clients.add(c);
+                    log.info(Thread.currentThread().getName() + " Stabilita connessione con nuovo client\n");
+                } catch (SocketTimeoutException e) {
+                    Iterator<Socket> i = clients.iterator();
+                    while (i.hasNext()) {
+                        Socket c = i.next();
+                        if(c.isClosed()) i.remove();
+                    }
+                    continue;
+                }
+            }
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            /** In fase di arresto del pool spengo i thread e chiudo in modo forzato ogni socket pendente */
+            pool.shutdown();                        
+            try {
+                Iterator<Socket> i = clients.iterator();
+                while (i.hasNext()) {
+                    Socket c = i.next();
+                    if(!c.isClosed()) c.close();
+                }
+                System.out.println(pool.awaitTermination(5, TimeUnit.SECONDS));
+                if(!pool.isTerminated()) pool.shutdownNow();
+                System.out.println(pool.awaitTermination(5, TimeUnit.SECONDS));
+            } catch (InterruptedException | IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 
+     * @fun                 acceptSelector
+     * @brief               Accetta le connessioni con ServerSocketChannel non bloccante e le distribuisce
+     *                      su un numero fisso di event loop, che affidano le richieste bloccanti a nioWorkers thread
+     * 
+     */
+    private void acceptSelector() {
+
+        /** Avvio gli event loop */
+        EventLoop[] loops = new EventLoop[eventLoops];
+        Thread[] loopThreads = new Thread[eventLoops];
+        ExecutorService workers = Executors.newFixedThreadPool(nioWorkers, r -> new Thread(r, "NioWorker"));
+        if(this.users.blockingPersistence()) {
+            log.config(Thread.currentThread().getName() + " Persistenza sincrona: richieste elaborate da " + nioWorkers + " worker\n");
+        }
+        try (ServerSocketChannel ssc = ServerSocketChannel.open(); Selector acceptor = Selector.open()) {
+            for (int i = 0; i < eventLoops; i++) {
+                loops[i] = new EventLoop(users, this.admission, this.SocialNetworkIP, this.SocialNetworkPORT, workers, log);
+                loopThreads[i] = new Thread(loops[i], "EventLoop-" + i);
+                loopThreads[i].start();
+            }
+            ssc.bind(new InetSocketAddress(listeningPort), acceptBacklog);
+            ssc.configureBlocking(false);
+            ssc.register(acceptor, SelectionKey.OP_ACCEPT);
+            log.config(Thread.currentThread().getName() + " Server avviato correttamente (" + eventLoops + " event loop)\n");
+
+            /** Attendo richieste di accept e le assegno agli event loop a turno */
+            int next = 0;
+            while (!Thread.interrupted()) {
+                if(acceptor.select(2000) == 0) continue;
+                acceptor.selectedKeys().clear();
+                SocketChannel c;
+                while ((c = ssc.accept()) != null) {
+                    if(!this.admission.admit(c.socket().getInetAddress())) {
+                        this.admission.refuse(c);
+                        continue;
+                    }
+                    log.info(Thread.currentThread().getName() + " Stabilita connessione con nuovo client\n");
+                    loops[next].register(c);
+                    next = (next + 1) % eventLoops;
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            /** In fase di arresto fermo gli event loop, che chiudono le connessioni pendenti */
+            for (Thread t : loopThreads) {
+                if(t != null) t.interrupt();
+            }
+            try {
+                for (Thread t : loopThreads) {
+                    if(t != null) t.join(5000);
+                }
+                workers.shutdown();
+                if(!workers.awaitTermination(5, TimeUnit.SECONDS)) workers.shutdownNow();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
     /*************************************/
 
     /**
@@ -118,12 +302,29 @@ public class WordleServer implements Runnable {
         /** Settaggio parametri server */
         String save;
         String[][] paramSettings;
-        paramSettings = ReadConfigFile.readFileConfig(configFile, "ipSocialNetwork", "portSocialNetwork", "listenPort", "timegame");
+        paramSettings = ReadConfigFile.readFileConfig(configFile, "ipSocialNetwork", "portSocialNetwork", "listenPort", "timegame", "serverMode", "eventLoops", "nioWorkers", "feedbackCacheSize",
+                                                    "persistence", "journalFile", "journalSync", "journalSyncMs", "journalCheckpointBytes",
+                                                    "snapshotIntervalMs", "snapshotChanges", "snapshotFormat",
+                                                    "tieredHistory", "historyFile", "userStore", "userStoreFile",
+                                                    "translatorUrl", "translatorTimeoutMs", "translationCache", "roundEpochMs",
+                                                    "notifyThreads", "notifyTimeoutMs", "notifyMaxFailures", "podiumMode", "podiumGroup", "podiumPort", "podiumIntervalMs",
+                                                    "maxSessions", "maxConnectionsPerIp", "handlerThreads", "acceptBacklog", "busyRetryMs");
 
         this.listeningPort = ((save = Utils.filterParam(paramSettings, "listenPort")).equals("")) ? PORT_TCP : Integer.parseInt(save);
         this.SocialNetworkIP = ((save = Utils.filterParam(paramSettings, "ipSocialNetwork")).equals("")) ? SocialNetworkIP_DEFAULT : save;
         this.SocialNetworkPORT = ((save = Utils.filterParam(paramSettings, "portSocialNetwork")).equals("")) ? SocialNetworkPORT_DEFAULT : Integer.parseInt(save);
         this.timegame = ((save = Utils.filterParam(paramSettings, "timegame")).equals("")) ? timegameDefault : Integer.parseInt(save);
+        this.serverMode = ((save = Utils.filterParam(paramSettings, "serverMode")).equals("")) ? serverModeDefault : save;
+        this.eventLoops = ((save = Utils.filterParam(paramSettings, "eventLoops")).equals("")) ? eventLoopsDefault : Integer.parseInt(save);
+        if(this.eventLoops <= 0) throw new IllegalArgumentException("eventLoops");
+        this.nioWorkers = ((save = Utils.filterParam(paramSettings, "nioWorkers")).equals("")) ? nioWorkersDefault : Integer.parseInt(save);
+        if(this.nioWorkers <= 0) throw new IllegalArgumentException("nioWorkers");
+        this.handlerThreads = ((save = Utils.filterParam(paramSettings, "handlerThreads")).equals("")) ? handlerThreadsDefault : Integer.parseInt(save);
+        if(this.handlerThreads <= 0) throw new IllegalArgumentException("handlerThreads");
+        this.acceptBacklog = ((save = Utils.filterParam(paramSettings, "acceptBacklog")).equals("")) ? acceptBacklogDefault : Integer.parseInt(save);
+        int maxSessions = ((save = Utils.filterParam(paramSettings, "maxSessions")).equals("")) ? AdmissionControl.maxSessionsDefault : Integer.parseInt(save);
+        int maxConnectionsPerIp = ((save = Utils.filterParam(paramSettings, "maxConnectionsPerIp")).equals("")) ? AdmissionControl.maxConnectionsPerIpDefault : Integer.parseInt(save);
+        long busyRetryMs = ((save = Utils.filterParam(paramSettings, "busyRetryMs")).equals("")) ? AdmissionControl.busyRetryMsDefault : Long.parseLong(save);
         
         /** Avvio logfile */
         log = Logger.getLogger("WordleGameServer");
@@ -139,9 +340,10 @@ public class WordleServer implements Runnable {
             e.printStackTrace();
             return;
         }
+        this.admission = new AdmissionControl(maxSessions, maxConnectionsPerIp, busyRetryMs, log);
 
         /** Costruisco il Database */
-        users = new UsersDatabase(backupFile, words, timegame, log);
+        users = new UsersDatabase(backupFile, words, timegame, paramSettings, log);
 
     }
 
@@ -157,53 +359,26 @@ public class WordleServer implements Runnable {
         /** Implemento servizio RMI per login e registrazione di un utente */
         runRMI();
 
-        /** Attendo richieste di accept */
-        ExecutorService pool = Executors.newCachedThreadPool();
-        log.config(Thread.currentThread().getName() + " Server avviato correttamente\n");
-        LinkedList<Socket> clients = new LinkedList<>();
-        try (ServerSocket ss = new ServerSocket(listeningPort)) {
-            ss.setSoTimeout(2000);
-            while (!Thread.interrupted()) {
-                try {
-                    Socket c;
-                    c = ss.accept();
-                    clients.add(c);
-                    log.info(Thread.currentThread().getName() + " Stabilita connessione con nuovo client\n");
-                    pool.execute(new ClientRequest(users, c, this.SocialNetworkIP, this.SocialNetworkPORT, log));
-                } catch (SocketTimeoutException e) {
-                    Iterator<Socket> i = clients.iterator();
-                    while (i.hasNext()) {
-                        Socket c = i.next();
-                        if(c.isClosed()) i.remove();
-                    }
-                    continue;
-                }
-            }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        } finally {
-            /** In fase di arresto del pool spengo i thread e chiudo in modo forzato ogni socket pendente */
-            pool.shutdown();                        
-            try {
-                Iterator<Socket> i = clients.iterator();
-                while (i.hasNext()) {
-                    Socket c = i.next();
-                    if(!c.isClosed()) c.close();
-                }
-                System.out.println(pool.awaitTermination(5, TimeUnit.SECONDS));
-                if(!pool.isTerminated()) pool.shutdownNow();
-                System.out.println(pool.awaitTermination(5, TimeUnit.SECONDS));
-                this.users.stopDatabase();  
-                stopRMI();
-                System.exit(0);
-            } catch (InterruptedException | IOException e) {
-                return;
-            }
-            
+        /** Attendo richieste di accept secondo la modalita' configurata */
+        switch (this.serverMode) {
+            case "nio":
+                acceptSelector();
+            break;
+
+            case "virtual":
+                acceptBlocking(newVirtualThreadPool());
+            break;
+
+            default:
+                acceptBlocking(newHandlerPool());
+            break;
         }
-        
+        this.admission.logCounters();
+
+        /** Arresto del database e del servizio RMI */
+        this.users.stopDatabase();
+        stopRMI();
+        System.exit(0);
 
     }
 
@@ -0,0 +1,275 @@
+package Server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ *
+ * @class                   WordsDictionary
+ * @brief                   Dizionario delle parole di gioco. Ogni parola di lettere minuscole (al piu' 12) e' impacchettata
+ *                          in un long a 5 bit per lettera e indicizzata in una tabella hash ad indirizzamento aperto:
+ *                          ricerca ed estrazione casuale costano O(1) e non allocano oggetti
+ * @author                  Simone Tassotti
+ * @date                    18/10/2026
+ *
+ */
+public class WordsDictionary {
+
+    /** Variabili globali */
+    public static final int MAX_LETTERS = 12;               // 12 lettere * 5 bit = 60 bit
+    private static final long EMPTY = 0;
+
+    /** Attributi */
+    private long[] table;                                   // Parole impacchettate (0 = slot libero)
+    private int[] tableIndex;                               // Indice della parola contenuta nello slot corrispondente
+    private long[] words;                                   // Parole in ordine di caricamento (0 se non impacchettabile)
+    private int size;
+    private HashMap<String, Integer> others;                // Parole non impacchettabili (lettere non a-z o troppo lunghe)
+    private HashMap<Integer, String> othersByIndex;
+
+    /**
+     *
+     * @fun                 WordsDictionary
+     * @brief               Metodo costruttore
+     * @param capacity      Numero di parole previste
+     *
+     */
+    public WordsDictionary(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2*capacity, 16) - 1) << 1;
+        this.table = new long[cap];
+        this.tableIndex = new int[cap];
+        this.words = new long[Math.max(capacity, 16)];
+        this.size = 0;
+        this.others = new HashMap<>();
+        this.othersByIndex = new HashMap<>();
+    }
+
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 pack
+     * @brief               Impacchetta una parola a 5 bit per lettera ('a' = 1 ... 'z' = 26)
+     * @param w             Parola da impacchettare
+     * @return              La parola impacchettata, -1 se la parola non e' rappresentabile
+     *
+     */
+    private static long pack(String w) {
+        int n = w.length();
+        if(n == 0 || n > MAX_LETTERS) return -1;
+        long v = 0;
+        for (int i = 0; i < n; i++) {
+            char c = w.charAt(i);
+            if(c < 'a' || c > 'z') return -1;
+            v = (v << 5) | (c - 'a' + 1);
+        }
+        return v;
+    }
+
+    /**
+     *
+     * @fun                 unpack
+     * @brief               Ricostruisce la parola da un long impacchettato
+     * @param v             Parola impacchettata
+     * @return              La parola in formato String
+     *
+     */
+    private static String unpack(long v) {
+        char[] c = new char[MAX_LETTERS];
+        int n = MAX_LETTERS;
+        while (v != 0) {
+            c[--n] = (char) ('a' + (int) (v & 31) - 1);
+            v >>>= 5;
+        }
+        return new String(c, n, MAX_LETTERS - n);
+    }
+
+    /**
+     *
+     * @fun                 slot
+     * @brief               Posizione iniziale nella tabella (mescolamento dei bit come in MurmurHash3)
+     *
+     */
+    private int slot(long v) {
+        v ^= v >>> 33;
+        v *= 0xff51afd7ed558ccdL;
+        v ^= v >>> 33;
+        return (int) v & (this.table.length - 1);
+    }
+
+    private void grow() {
+        long[] old = this.table;
+        int[] oldIndex = this.tableIndex;
+        this.table = new long[old.length*2];
+        this.tableIndex = new int[old.length*2];
+        for (int i = 0; i < old.length; i++) {
+            if(old[i] == EMPTY) continue;
+            int s = slot(old[i]);
+            while (this.table[s] != EMPTY) s = (s + 1) & (this.table.length - 1);
+            this.table[s] = old[i];
+            this.tableIndex[s] = oldIndex[i];
+        }
+    }
+
+    /*************************************/
+
+    /**
+     *
+     * @fun                     load
+     * @brief                   Carica il dizionario da file (la prima riga del file e' ignorata)
+     * @param pathname          File dal quale caricare il dizionario di parole
+     * @return                  Il dizionario di parole, null altrimenti
+     *
+     */
+    public static WordsDictionary load(String pathname) {
+
+        /** Controllo esistenza file */
+        File f = new File(pathname);
+        if(!f.exists() || !f.isFile()) return null;
+        WordsDictionary d = new WordsDictionary((int) Math.min(f.length() / 11 + 1, Integer.MAX_VALUE / 4));
+
+        /** Upload delle parole segrete */
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            String s = br.readLine();
+            while ((s = br.readLine()) != null) {
+                d.add(s);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return d;
+    }
+
+    /**
+     *
+     * @fun                 add
+     * @brief               Aggiunge una parola al dizionario
+     * @param w             Parola da aggiungere
+     * @return              true se la parola e' stata aggiunta, false se gia' presente
+     *
+     */
+    public boolean add(String w) {
+        if(contains(w)) return false;
+        if(this.size == this.words.length) this.words = Arrays.copyOf(this.words, this.size*2);
+
+        long v = pack(w);
+        if(v == -1) {
+            this.others.put(w, this.size);
+            this.othersByIndex.put(this.size, w);
+            this.words[this.size++] = EMPTY;
+            return true;
+        }
+        if(2*(this.size + 1) > this.table.length) grow();
+        int s = slot(v);
+        while (this.table[s] != EMPTY) s = (s + 1) & (this.table.length - 1);
+        this.table[s] = v;
+        this.tableIndex[s] = this.size;
+        this.words[this.size++] = v;
+        return true;
+    }
+
+    /**
+     *
+     * @fun                 indexOf
+     * @brief               Indice della parola nel dizionario
+     * @param w             Parola da cercare
+     * @return              Indice della parola, -1 se non presente
+     *
+     */
+    public int indexOf(String w) {
+        long v = pack(w);
+        if(v == -1) {
+            Integer i = this.others.get(w);
+            return (i == null) ? -1 : i;
+        }
+        int s = slot(v);
+        while (this.table[s] != EMPTY) {
+            if(this.table[s] == v) return this.tableIndex[s];
+            s = (s + 1) & (this.table.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @fun                 contains
+     * @brief               Controlla se una parola appartiene al dizionario
+     * @param w             Parola da cercare
+     * @return              true se presente, false altrimenti
+     *
+     */
+    public boolean contains(String w) {
+        return indexOf(w) != -1;
+    }
+
+    /**
+     *
+     * @fun                 get
+     * @brief               Restituisce la parola di indice i
+     * @param i             Indice della parola
+     * @return              La parola
+     *
+     */
+    public String get(int i) {
+        if(i < 0 || i >= this.size) throw new IndexOutOfBoundsException(i);
+        return (this.words[i] == EMPTY) ? this.othersByIndex.get(i) : unpack(this.words[i]);
+    }
+
+    /**
+     *
+     * @fun                 random
+     * @brief               Estrae una parola a caso dal dizionario
+     * @param r             Generatore di numeri casuali
+     * @return              Parola estratta
+     *
+     */
+    public String random(Random r) {
+        return get(r.nextInt(0, this.size));
+    }
+
+    /**
+     *
+     * @fun                 size
+     * @brief               Numero di parole nel dizionario
+     * @return              Numero di parole
+     *
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     *
+     * @fun                 fingerprint
+     * @brief               Impronta del contenuto e dell'ordine delle parole: chi salva indici del dizionario la usa per
+     *                      verificare di rileggerli con lo stesso dizionario
+     * @return              Impronta a 64 bit
+     *
+     */
+    public long fingerprint() {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < this.size; i++) {
+            long v = (this.words[i] == EMPTY) ? this.othersByIndex.get(i).hashCode() : this.words[i];
+            h = (h ^ v) * 0x100000001b3L;
+        }
+        return h ^ this.size;
+    }
+
+    /**
+     *
+     * @fun                 memoryBytes
+     * @brief               Stima dei byte occupati dalle strutture del dizionario (escluse le parole non impacchettabili)
+     * @return              Byte occupati
+     *
+     */
+    public long memoryBytes() {
+        return 8L*this.table.length + 4L*this.tableIndex.length + 8L*this.words.length;
+    }
+
+}
@@ -1,55 +1,145 @@
 package Server;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
- * 
+ *
  * @class                       WordsUpdater
- * @brief                       Classe che gestisce un thread che si occupa di aggiornare le parole del server di gioco
+ * @brief                       Classe che si occupa di aggiornare le parole del server di gioco. I cambi parola sono
+ *                              pianificati su istanti fissi (epoch + k*durata del round), per cui la durata del round
+ *                              non si allunga del tempo impiegato dal cambio parola; il tempo del cambio parola e'
+ *                              misurato e segnalato nel log quando supera un decimo del round
  * @author                      Simone Tassotti
  * @date                        21/04/2023
- * 
+ *
  */
 public class WordsUpdater implements Runnable {
 
     /** Attributi oggetto */
     private UsersDatabase us;
-    private long timer;
+    private long period;                                // Durata del round (ms)
+    private long epoch;                                 // Istante di riferimento dei cambi parola (ms)
+    private ScheduledExecutorService scheduler;
+    private long boundary;                              // Fine del round corrente (ms), 0 prima del primo cambio
+    private long rotations;
+    private long missed;                                // Cambi parola saltati perche' il precedente e' durato troppo
+    private volatile long lastRotationNs;
+    private volatile long maxRotationNs;
     private Logger log;
 
     /**
-     * 
+     *
      * @fun                     WordsUpdater
      * @brief                   Metodo costruttore
      * @param us                Database di gioco
-     * @param timer             Tempo di gioco prima di pubblicare una nuova parola
+     * @param timer             Tempo di gioco prima di pubblicare una nuova parola (secondi)
+     * @param epoch             Istante di riferimento dei cambi parola (ms dal 1970)
      * @param log               File di log
-     * 
+     *
      */
-    public WordsUpdater(UsersDatabase us, long timer, Logger log) {
+    public WordsUpdater(UsersDatabase us, long timer, long epoch, Logger log) {
+
+        /** Controllo argomenti */
+        if(timer <= 0) throw new IllegalArgumentException();
+
         this.us = us;
-        this.timer = timer;
+        this.period = timer*1000;
+        this.epoch = epoch;
+        this.boundary = 0;
         this.log = log;
     }
 
+    /*********** METODI PRIVATI **********/
+
+    /**
+     *
+     * @fun                 nextBoundary
+     * @brief               Primo istante di cambio parola successivo a t
+     *
+     */
+    private long nextBoundary(long t) {
+        return this.epoch + (Math.floorDiv(t - this.epoch, this.period) + 1)*this.period;
+    }
+
+    /*************************************/
+
     /**
-     * 
+     *
+     * @fun                 start
+     * @brief               Pubblica subito la prima parola e pianifica i cambi successivi
+     *
+     */
+    public void start() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "WordsUpdater"));
+        this.scheduler.execute(this);
+    }
+
+    /**
+     *
      * @fun                 run
-     * @brief               Ciclicamente aggiorna le parole del server
-     * @throws              InterruptedException
-     * 
+     * @brief               Cambia la parola e pianifica il cambio successivo sul prossimo istante fisso
+     *
      */
     @Override
     public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                this.us.changeWord();
-                this.log.info(Thread.currentThread().getName() + " Cambio parola da indovinare\n");
-                Thread.sleep(timer*1000);
-            } catch (InterruptedException e) {
-                break;
-            }
+
+        /** Il round termina sul prossimo istante fisso (mai prima di quello per cui il cambio era pianificato) */
+        long now = Math.max(System.currentTimeMillis(), this.boundary);
+        long end = nextBoundary(now);
+        if(this.boundary != 0 && end - this.boundary > this.period) {
+            long skipped = (end - this.boundary)/this.period - 1;
+            this.missed += skipped;
+            this.log.warning(Thread.currentThread().getName() + " Cambio parola in ritardo: saltati " + skipped + " round\n");
         }
+        this.boundary = end;
+
+        long t = System.nanoTime();
+        this.us.changeWord(end);
+        long d = System.nanoTime() - t;
+        this.rotations++;
+        this.lastRotationNs = d;
+        if(d > this.maxRotationNs) this.maxRotationNs = d;
+        if(d/1000000 > this.period/10) this.log.warning(Thread.currentThread().getName() + " Cambio parola lento: " + d/1000000 + " ms su un round di " + this.period + " ms\n");
+        else this.log.info(Thread.currentThread().getName() + " Cambio parola da indovinare in " + d/1000000 + " ms\n");
+
+        if(!this.scheduler.isShutdown()) this.scheduler.schedule(this, Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *
+     * @fun                 stop
+     * @brief               Annulla i cambi parola pianificati e attende la fine di quello in corso
+     * @throws              InterruptedException
+     *
+     */
+    public void stop() throws InterruptedException {
+        this.scheduler.shutdownNow();
+        this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        this.log.info(Thread.currentThread().getName() + " Cambi parola: " + this.rotations + " - ultimo " + lastRotationMs() + " ms, massimo "
+                + maxRotationMs() + " ms, round saltati " + this.missed + "\n");
     }
-    
+
+    /**
+     *
+     * @fun                 lastRotationMs
+     * @brief               Durata dell'ultimo cambio parola (ms)
+     *
+     */
+    public long lastRotationMs() {
+        return this.lastRotationNs/1000000;
+    }
+
+    /**
+     *
+     * @fun                 maxRotationMs
+     * @brief               Durata massima di un cambio parola (ms)
+     *
+     */
+    public long maxRotationMs() {
+        return this.maxRotationNs/1000000;
+    }
+
 }
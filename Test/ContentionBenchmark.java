@@ -0,0 +1,143 @@
+/**
+ *
+ * @class                                       ContentionBenchmark
+ * @brief                                       Throughput di playGame/sendGuessedWord su un UsersDatabase in memoria al
+ *                                              crescere dei thread: ogni thread gioca con utenti propri, quindi l'unica
+ *                                              contesa e' sulle strutture condivise del database (mappe degli utenti,
+ *                                              round corrente, classifica).
+ *                                              Uso: ContentionBenchmark <dizionario> [utenti per thread] [thread...]
+ * @author                                      Simone Tassotti
+ * @date                                        18/10/2026
+ *
+ */
+package Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import Server.UsersDatabase;
+import Server.WordsDictionary;
+
+public class ContentionBenchmark {
+
+    /** Variabili globali */
+    private static final int USERS_PER_THREAD = 2000;
+    private static final int GUESSES = 12;                  // Tentativi massimi di una partita
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+    private static int runs = 0;                            // Prove eseguite, per dare nomi diversi agli utenti
+
+    /**
+     *
+     * @fun                     run
+     * @brief                   Esegue il carico con n thread e restituisce le operazioni al secondo
+     * @param ud                Database di gioco
+     * @param guesses           Parole del dizionario da tentare (nessuna e' la parola segreta)
+     * @param n                 Numero di thread
+     * @param users             Utenti per thread
+     * @return                  Operazioni (playGame + sendGuessedWord) al secondo
+     *
+     */
+    private static double run(UsersDatabase ud, String[] guesses, int n, int users) throws InterruptedException {
+
+        /** Utenti nuovi per ogni prova, registrati e online prima di misurare */
+        String prefix = "b" + (runs++) + "_";
+        for (int t = 0; t < n; t++) {
+            for (int u = 0; u < users; u++) {
+                String name = prefix + t + "_" + u;
+                if(ud.registerUser(name, "pw") != 0 || ud.loginUser(name, "pw") != 0) throw new IllegalStateException(name);
+            }
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[n];
+        for (int t = 0; t < n; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int u = 0; u < users; u++) {
+                    String name = prefix + id + "_" + u;
+                    if(ud.playGame(name, "pw") != 0) throw new IllegalStateException(name);
+                    for (int g = 0; g < GUESSES; g++) {
+                        if(ud.sendGuessedWord(name, "pw", guesses[(u*GUESSES + g) % guesses.length]) == null) throw new IllegalStateException(name);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread w : workers) w.join();
+        long elapsed = System.nanoTime() - t0;
+        return (double) n*users*(1 + GUESSES) / (elapsed / 1e9);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        /** Controllo argomenti */
+        if(args.length < 1) throw new IllegalArgumentException("Numero di argomenti");
+        String dictionary = args[0];
+        int users = (args.length > 1) ? Integer.parseInt(args[1]) : USERS_PER_THREAD;
+        int[] threads = THREADS;
+        if(args.length > 2) {
+            threads = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) threads[i-2] = Integer.parseInt(args[i]);
+        }
+
+        WordsDictionary words = WordsDictionary.load(dictionary);
+        if(words == null || words.size() < 2) {
+            System.err.println("<< DIZIONARIO NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+            return;
+        }
+
+        /** Database in memoria: snapshot solo in chiusura, traduttore non raggiungibile, round piu' lungo della misura */
+        File dir = File.createTempFile("contention", "");
+        dir.delete();
+        dir.mkdir();
+        Logger log = Logger.getLogger("ContentionBenchmark");
+        log.setUseParentHandlers(false);
+        log.setLevel(Level.OFF);
+        String[][] settings = {
+            { "persistence", "background" },
+            { "snapshotIntervalMs", Long.toString(Long.MAX_VALUE / 2) },
+            { "snapshotChanges", Long.toString(Long.MAX_VALUE) },
+            { "translatorUrl", "http://127.0.0.1:9/" },
+            { "translatorTimeoutMs", "100" },
+            { "translationCache", new File(dir, "translations").getPath() }
+        };
+        UsersDatabase ud = new UsersDatabase(new File(dir, "users.json").getPath(), dictionary, 24*3600, settings, log);
+        while (ud.giveRound().secretWord.equals("")) Thread.sleep(10);
+
+        /** Tentativi: parole del dizionario diverse dalla parola segreta */
+        String secret = ud.giveRound().secretWord;
+        Random r = new Random(1);
+        String[] guesses = new String[4096];
+        for (int i = 0; i < guesses.length; i++) {
+            String w;
+            while ((w = words.random(r)).equals(secret));
+            guesses[i] = w;
+        }
+
+        System.out.println("Utenti per thread: " + users + " - core disponibili: " + Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < 3; i++) run(ud, guesses, 1, users);    // Riscaldamento (JIT)
+        double base = 0;
+        for (int n : threads) {
+            double ops = run(ud, guesses, n, users);
+            if(base == 0) base = ops / n;
+            System.out.printf("%2d thread: %12.0f op/s (x%.2f)%n", n, ops, ops / base);
+        }
+
+        ud.stopDatabase();
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+        System.exit(0);
+    }
+}
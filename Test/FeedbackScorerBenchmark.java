@@ -0,0 +1,122 @@
+/**
+ *
+ * @class                                       FeedbackScorerBenchmark
+ * @brief                                       Tempo medio per tentativo di FeedbackScorer rispetto all'algoritmo originale
+ *                                              dei suggerimenti, su coppie casuali di parole del dizionario (stesso
+ *                                              seme per entrambi). Ogni misura e' ripetuta dopo un riscaldamento.
+ *                                              Uso: FeedbackScorerBenchmark <dizionario> [tentativi per misura]
+ * @author                                      Simone Tassotti
+ * @date                                        18/10/2026
+ *
+ */
+package Test;
+
+import java.util.Random;
+
+import Server.FeedbackScorer;
+import Server.WordsDictionary;
+
+public class FeedbackScorerBenchmark {
+
+    /** Variabili globali */
+    private static final int GUESSES = 2_000_000;
+    private static final int SECRETS = 64;
+    private static final int ROUNDS = 5;
+
+    /** Risultato delle misure, stampato per impedire l'eliminazione del codice misurato */
+    private static long sink = 0;
+
+    /**
+     *
+     * @fun                     baseline
+     * @brief                   Algoritmo originale di sendGuessedWord (senza le stampe di debug, vedi FeedbackScorerTest)
+     *
+     */
+    private static String baseline(String secretWord, String gw) {
+        StringBuilder s = new StringBuilder();
+        String save = secretWord;
+        for (int i = 0; i < gw.length(); i++) {
+            if(save.charAt(i) == gw.charAt(i)) {
+                char[] edit = save.toCharArray();
+                edit[i] = '-';
+                save = new String(edit);
+                s.append("+");
+            } else if(save.indexOf(gw.charAt(i)) == -1) {
+                s.append("X");
+            } else {
+                char[] edit = save.toCharArray();
+                int ind = save.indexOf(gw.charAt(i));
+                edit[ind] = '-';
+                save = new String(edit);
+                s.append("?");
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     *
+     * @fun                     measureBaseline
+     * @brief                   Nanosecondi per tentativo dell'algoritmo originale
+     *
+     */
+    private static double measureBaseline(String[] secrets, String[] guesses) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < guesses.length; i++) {
+            sink += baseline(secrets[i % secrets.length], guesses[i]).length();
+        }
+        return (double) (System.nanoTime() - t0) / guesses.length;
+    }
+
+    /**
+     *
+     * @fun                     measureScorer
+     * @brief                   Nanosecondi per tentativo di FeedbackScorer (scorer costruito una volta per parola segreta)
+     *
+     */
+    private static double measureScorer(FeedbackScorer[] scorers, String[] guesses) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < guesses.length; i++) {
+            sink += scorers[i % scorers.length].score(guesses[i]);
+        }
+        return (double) (System.nanoTime() - t0) / guesses.length;
+    }
+
+    public static void main(String[] args) {
+
+        /** Controllo argomenti */
+        if(args.length < 1) throw new IllegalArgumentException("Numero di argomenti");
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : GUESSES;
+
+        WordsDictionary words = WordsDictionary.load(args[0]);
+        if(words == null || words.size() == 0) {
+            System.err.println("<< DIZIONARIO NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+            return;
+        }
+
+        /** Parole segrete e tentativi della stessa lunghezza */
+        Random r = new Random(42);
+        String[] secrets = new String[SECRETS];
+        FeedbackScorer[] scorers = new FeedbackScorer[SECRETS];
+        for (int i = 0; i < SECRETS; i++) {
+            secrets[i] = words.random(r);
+            scorers[i] = new FeedbackScorer(secrets[i]);
+        }
+        String[] guesses = new String[n];
+        for (int i = 0; i < n; i++) {
+            String w;
+            while ((w = words.random(r)).length() != secrets[i % SECRETS].length());
+            guesses[i] = w;
+        }
+
+        /** Riscaldamento, poi misure ripetute */
+        measureBaseline(secrets, guesses);
+        measureScorer(scorers, guesses);
+        for (int i = 0; i < ROUNDS; i++) {
+            double b = measureBaseline(secrets, guesses);
+            double s = measureScorer(scorers, guesses);
+            System.out.printf("Misura %d: originale %7.1f ns/tentativo - FeedbackScorer %7.1f ns/tentativo (x%.1f)%n", i + 1, b, s, b / s);
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ *
+ * @class                                       FeedbackScorerTest
+ * @brief                                       Confronto di FeedbackScorer con l'algoritmo originale dei suggerimenti
+ *                                              (copiato da sendGuessedWord prima dell'introduzione dello scorer):
+ *                                              tutto il dizionario come tentativo contro un campione di parole segrete,
+ *                                              ogni parola come segreta, casi con lettere ripetute e tutte le coppie di
+ *                                              parole di 5 lettere sull'alfabeto {a, b, c}.
+ *                                              Uso: FeedbackScorerTest <dizionario> [parole segrete]
+ * @author                                      Simone Tassotti
+ * @date                                        18/10/2026
+ *
+ */
+package Test;
+
+import Server.FeedbackScorer;
+import Server.WordsDictionary;
+
+public class FeedbackScorerTest {
+
+    /** Variabili globali */
+    private static final int SECRETS = 200;
+    private static final String[][] REPEATED = {
+        { "banana", "ananas" }, { "banana", "aaaaaa" }, { "aabbcc", "ccbbaa" }, { "abcabc", "aaabbb" },
+        { "llama", "label" }, { "eerie", "there" }, { "speed", "erase" }, { "sassy", "asses" },
+        { "abbey", "bobby" }, { "mamma", "ammam" }, { "pizza", "zzzzz" }, { "geese", "eeeee" },
+        { "cocco", "occoc" }, { "errore", "reorre" }, { "pallacanestro", "allacanestrop" }, { "ab-ab", "-ab-b" }
+    };
+
+    /** Esiti */
+    private static long checked = 0;
+    private static long failed = 0;
+    private static long marked = 0;                         // Tentativi con '-', dove l'originale si discosta dalla regola
+
+    /**
+     *
+     * @fun                     baseline
+     * @brief                   Algoritmo originale: una lettera al posto giusto consuma la propria posizione, altrimenti
+     *                          la prima occorrenza ancora libera nella parola segreta. Le posizioni consumate sono
+     *                          segnate con mark; l'originale usa '-', che pero' viene confrontato con le lettere del
+     *                          tentativo: un '-' nel tentativo riceve '?' se incontra una posizione gia' consumata
+     * @param secretWord        Parola segreta
+     * @param gw                Parola tentata (non piu' lunga della parola segreta)
+     * @param mark              Carattere che segna le posizioni consumate
+     * @return                  Stringa di suggerimenti
+     *
+     */
+    private static String baseline(String secretWord, String gw, char mark) {
+        StringBuilder s = new StringBuilder();
+        String save = secretWord;
+        for (int i = 0; i < gw.length(); i++) {
+            if(save.charAt(i) == gw.charAt(i)) {
+                char[] edit = save.toCharArray();
+                edit[i] = mark;
+                save = new String(edit);
+                s.append("+");
+            } else if(save.indexOf(gw.charAt(i)) == -1) {
+                s.append("X");
+            } else {
+                char[] edit = save.toCharArray();
+                int ind = save.indexOf(gw.charAt(i));
+                edit[ind] = mark;
+                save = new String(edit);
+                s.append("?");
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     *
+     * @fun                     check
+     * @brief                   Confronta i due algoritmi su una coppia parola segreta - tentativo
+     *
+     */
+    private static void check(FeedbackScorer scorer, String guess) {
+
+        /** Con un '-' nel tentativo lo scorer lo tratta come una lettera qualsiasi: confronto con un segno che non compare nelle parole */
+        char mark = '-';
+        if(guess.indexOf(mark) != -1) {
+            mark = '\0';
+            marked++;
+        }
+        String expected = baseline(scorer.secret(), guess, mark);
+        String actual = FeedbackScorer.decode(scorer.score(guess));
+        checked++;
+        if(!expected.equals(actual)) {
+            if(failed++ < 20) System.out.println("ERRORE " + scorer.secret() + " / " + guess + ": atteso " + expected + " - ottenuto " + actual);
+        }
+    }
+
+    public static void main(String[] args) {
+
+        /** Controllo argomenti */
+        if(args.length < 1) throw new IllegalArgumentException("Numero di argomenti");
+        int secrets = (args.length > 1) ? Integer.parseInt(args[1]) : SECRETS;
+
+        WordsDictionary words = WordsDictionary.load(args[0]);
+        if(words == null || words.size() == 0) {
+            System.err.println("<< DIZIONARIO NON TROVATO O IMPOSSIBILE APRIRLO >>\n");
+            System.exit(2);
+        }
+        int n = words.size();
+
+        /** Tutto il dizionario contro un campione di parole segrete distribuito sul dizionario */
+        for (int s = 0; s < Math.min(secrets, n); s++) {
+            FeedbackScorer scorer = new FeedbackScorer(words.get((int) ((long) s*n/Math.min(secrets, n))));
+            for (int i = 0; i < n; i++) {
+                String guess = words.get(i);
+                if(guess.length() <= scorer.secret().length()) check(scorer, guess);
+            }
+        }
+
+        /** Ogni parola come segreta: contro se stessa, la parola successiva e la propria inversione */
+        for (int i = 0; i < n; i++) {
+            String secret = words.get(i);
+            FeedbackScorer scorer = new FeedbackScorer(secret);
+            check(scorer, secret);
+            String next = words.get((i + 1) % n);
+            if(next.length() <= secret.length()) check(scorer, next);
+            check(scorer, new StringBuilder(secret).reverse().toString());
+        }
+
+        /** Lettere ripetute */
+        for (String[] c : REPEATED) {
+            check(new FeedbackScorer(c[0]), c[1]);
+            check(new FeedbackScorer(c[1]), c[0]);
+        }
+        String[] small = new String[243];
+        for (int i = 0; i < small.length; i++) {
+            char[] w = new char[5];
+            for (int j = 0, v = i; j < 5; j++, v /= 3) w[j] = (char) ('a' + v % 3);
+            small[i] = new String(w);
+        }
+        for (String secret : small) {
+            FeedbackScorer scorer = new FeedbackScorer(secret);
+            for (String guess : small) check(scorer, guess);
+        }
+
+        /** Tentativo piu' lungo della parola segreta: errore invece di eccezione */
+        checked++;
+        if(new FeedbackScorer("abc").score("abcd") != -1) {
+            failed++;
+            System.out.println("ERRORE tentativo piu' lungo della parola segreta non rifiutato");
+        }
+
+        System.out.println("Coppie confrontate: " + checked + " - differenze: " + failed + " (tentativi con '-': " + marked + ")");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ *
+ * @class                                       LoginIdentityTest
+ * @brief                                       Regressione del protocollo binario: un secondo OP_LOGIN con le credenziali di
+ *                                              un altro utente viene rifiutato (codice 3) e non cambia l'identita' della
+ *                                              sessione, ne' con ClientRequest (server bloccante) ne' con ClientSession
+ *                                              (event loop, con i messaggi elaborati dall'event loop o dai worker). Il
+ *                                              database di gioco e' sostituito da uno che registra gli username ricevuti.
+ *                                              Uso: LoginIdentityTest
+ * @author                                      Simone Tassotti
+ * @date                                        18/10/2026
+ *
+ */
+package Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import General.Protocol;
+import Server.AdmissionControl;
+import Server.ClientRequest;
+import Server.EventLoop;
+import Server.UsersDatabase;
+
+public class LoginIdentityTest {
+
+    /**
+     *
+     * @class               RecordingDatabase
+     * @brief               Database di gioco con due utenti (alice e bob) che registra le chiamate ricevute
+     *
+     */
+    private static class RecordingDatabase extends UsersDatabase {
+        final List<String> calls = new CopyOnWriteArrayList<>();
+        final boolean blocking;
+
+        RecordingDatabase(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public boolean blockingPersistence() {
+            return this.blocking;
+        }
+
+        @Override
+        public int loginUser(String username, String password) {
+            this.calls.add("login " + username);
+            if(username.equals("alice")) return password.equals("alicepw") ? 0 : 2;
+            if(username.equals("bob")) return password.equals("bobpw") ? 0 : 2;
+            return 1;
+        }
+
+        @Override
+        public int playGame(String username, String password) {
+            this.calls.add("play " + username);
+            return 0;
+        }
+
+        @Override
+        public void logoutUser(String username, String password) {
+            this.calls.add("logout " + username);
+        }
+    }
+
+    /** Esiti */
+    private static int failed = 0;
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeShort(b.length);
+        dos.write(b);
+    }
+
+    private static int request(DataOutputStream dos, DataInputStream dis, int id, int op, String... args) throws IOException {
+        dos.writeInt(id);
+        dos.writeByte(op);
+        for (String a : args) writeString(dos, a);
+        dos.flush();
+        if(dis.readInt() != id) throw new IOException("Risposta fuori ordine");
+        return dis.readByte();
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        if(!expected.equals(actual)) {
+            failed++;
+            System.out.println("ERRORE " + what + ": atteso " + expected + " - ottenuto " + actual);
+        }
+    }
+
+    /**
+     *
+     * @fun                     session
+     * @brief                   Accesso come alice, secondo accesso come bob, richiesta di gioco e logout
+     *
+     */
+    private static void session(String server, InetSocketAddress address, RecordingDatabase db) throws IOException, InterruptedException {
+        try (Socket s = new Socket(address.getAddress(), address.getPort())) {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            dos.writeInt(Protocol.HELLO);
+            dos.writeByte(Protocol.VERSION);
+            dos.flush();
+            if(dis.readInt() != Protocol.HELLO || dis.readUnsignedByte() != Protocol.VERSION) throw new IOException("HELLO");
+
+            expect(server + " primo accesso", 0, request(dos, dis, 1, Protocol.OP_LOGIN, "alice", "alicepw"));
+            expect(server + " secondo accesso", 3, request(dos, dis, 2, Protocol.OP_LOGIN, "bob", "wrong"));
+            expect(server + " gioco", 0, request(dos, dis, 3, Protocol.OP_PLAY));
+            expect(server + " logout", 0, request(dos, dis, 4, Protocol.OP_LOGOUT));
+        }
+        Thread.sleep(200);
+        expect(server + " chiamate al database", List.of("login alice", "play alice", "logout alice"), List.copyOf(db.calls));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger log = Logger.getLogger("LoginIdentityTest");
+        log.setUseParentHandlers(false);
+        log.setLevel(Level.OFF);
+
+        /** Server bloccante: una ClientRequest per connessione */
+        RecordingDatabase blocking = new RecordingDatabase(false);
+        try (ServerSocket ss = new ServerSocket(0)) {
+            Thread t = new Thread(() -> {
+                try {
+                    new ClientRequest(blocking, ss.accept(), "239.0.0.1", 9, log).run();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            t.start();
+            session("ClientRequest", new InetSocketAddress("127.0.0.1", ss.getLocalPort()), blocking);
+            t.join();
+        }
+
+        /** Event loop non bloccante: ClientSession, con i messaggi elaborati dall'event loop e poi dai worker */
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        for (boolean offload : new boolean[] { false, true }) {
+            RecordingDatabase nio = new RecordingDatabase(offload);
+            AdmissionControl admission = new AdmissionControl(10, 0, 1000, log);
+            EventLoop loop = new EventLoop(nio, admission, "239.0.0.1", 9, workers, log);
+            Thread t = new Thread(loop);
+            t.start();
+            try (ServerSocketChannel ssc = ServerSocketChannel.open()) {
+                ssc.bind(new InetSocketAddress("127.0.0.1", 0));
+                Thread acceptor = new Thread(() -> {
+                    try {
+                        SocketChannel c = ssc.accept();
+                        admission.admit(c.socket().getInetAddress());
+                        loop.register(c);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+                acceptor.start();
+                session(offload ? "ClientSession (worker)" : "ClientSession", (InetSocketAddress) ssc.getLocalAddress(), nio);
+                acceptor.join();
+            }
+            t.interrupt();
+            t.join();
+        }
+        workers.shutdown();
+
+        System.out.println(failed == 0 ? "OK" : "Errori: " + failed);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}